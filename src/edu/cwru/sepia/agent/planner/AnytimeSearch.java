@@ -0,0 +1,161 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Anytime Repairing A* (ARA*). The first plan is found quickly with weighted A* (f = g + w * h). The weight is then
+ * lowered step by step and the search continues with the same open list, so every iteration only repairs the previous
+ * one instead of starting over. Each iteration can only find a plan that is cheaper than the best plan so far.
+ *
+ * States whose path cost improves after they were expanded in the current iteration are kept in an inconsistent
+ * list and queued again when the next iteration starts. The search stops when the weight reaches 1 (the plan is then
+ * optimal for the heuristic), when the open list runs out or when the deadline passes. The search does not stop at
+ * the deadline before the first plan is found, since there would be nothing to execute.
+ */
+public class AnytimeSearch extends SearchEngine {
+	private final double initialWeight;
+	private final double weightStep;
+	private final long timeLimit;
+
+	private long expansions = 0;
+
+	/**
+	 * @param initialWeight Heuristic weight of the first iteration
+	 * @param weightStep Amount the weight is lowered by after each plan, must be positive so the weight reaches 1
+	 * @param timeLimit Wall clock budget of the search in milliseconds, 0 for no limit
+	 * @throws IllegalArgumentException if weightStep is not positive
+	 */
+	public AnytimeSearch(double initialWeight, double weightStep, long timeLimit) {
+		if (!(weightStep > 0.)) {
+			throw new IllegalArgumentException("weightStep must be positive, was " + weightStep);
+		}
+		this.initialWeight = Math.max(initialWeight, 1.);
+		this.weightStep = weightStep;
+		this.timeLimit = timeLimit;
+	}
+
+	@Override
+	public GameState search(GameState startState) {
+		long deadline = (timeLimit > 0) ? System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+		Heuristic heuristic = startState.getEvaluator().getHeuristic();
+		double weight = initialWeight;
+
+		IndexedOpenList openList = new IndexedOpenList();
+		ClosedSet closedList = new ClosedSet();
+		List<GameState> inconsistent = new ArrayList<GameState>();
+
+		// the cheapest node found so far for every state, over all iterations
+		HashMap<GameState, GameState> seen = new HashMap<GameState, GameState>();
+
+		startState.reweigh(new Evaluator(1., weight, heuristic));
+		openList.add(startState);
+		seen.put(startState, startState);
+
+		GameState incumbent = null;
+
+		while (!this.isCancelled()) {
+			long start = System.currentTimeMillis();
+			GameState goal = this.improvePath(openList, closedList, inconsistent, seen, incumbent, deadline);
+
+			if (goal != null) {
+				incumbent = goal;
+				System.out.println("ARA* weight " + weight + ": plan cost " + incumbent.getPathCost() + " turns, " + expansions + " expansions, " + (System.currentTimeMillis() - start) + " ms");
+			}
+
+			// stop when the plan is optimal for the heuristic, the time is up, the budget is spent or nothing is left
+			// to search
+			if (this.getBudget().getReason() != SearchBudget.CutoffReason.NONE) {
+				break;
+			}
+			if (incumbent != null && (weight <= 1. || System.currentTimeMillis() >= deadline)) {
+				break;
+			}
+			if (openList.isEmpty() && inconsistent.isEmpty()) {
+				break;
+			}
+
+			// lower the weight and queue the open and inconsistent states again with their new priorities
+			weight = Math.max(1., weight - weightStep);
+			Evaluator evaluator = new Evaluator(1., weight, heuristic);
+
+			List<GameState> states = openList.drain();
+			states.addAll(inconsistent);
+			inconsistent.clear();
+			for (GameState state: states) {
+				state.reweigh(evaluator);
+				openList.add(state);
+			}
+			closedList = new ClosedSet();
+		}
+
+		System.out.println(openList);
+		System.out.println(closedList);
+		printCacheStatistics(startState);
+		if (incumbent != null) {
+			System.out.println("plan cost: " + incumbent.getPathCost() + " turns, " + incumbent.getEvaluator());
+		}
+
+		return incumbent;
+	}
+
+	// helper method to run weighted A* until no queued state can lead to a cheaper plan, returns the new best goal
+	private GameState improvePath(IndexedOpenList openList, ClosedSet closedList, List<GameState> inconsistent, HashMap<GameState, GameState> seen, GameState incumbent, long deadline) {
+		double bound = (incumbent == null) ? Double.POSITIVE_INFINITY : incumbent.getPathCost();
+		GameState best = null;
+
+		while (!openList.isEmpty() && openList.peek().getPriority() < bound && !this.isCancelled()) {
+			// give up at the deadline once there is a plan to execute
+			if ((incumbent != null || best != null) && System.currentTimeMillis() >= deadline) {
+				break;
+			}
+
+			GameState current = openList.poll();
+
+			// goal states are not expanded, a cheaper goal lowers the bound of this iteration
+			if (current.isGoal()) {
+				closedList.add(current);
+				if (current.getPathCost() < bound) {
+					best = current;
+					bound = current.getPathCost();
+				}
+				continue;
+			}
+
+			// a state the budget refuses stays open
+			if (!this.spend(current)) {
+				openList.add(current);
+				break;
+			}
+			closedList.add(current);
+
+			List<GameState> successorList = current.generateChildren();
+			current.compact();
+			expansions++;
+
+			for (GameState successor: successorList) {
+				// skip successors that were already reached with a path that is not more expensive
+				GameState previous = seen.get(successor);
+				if (previous != null && previous.getPathCost() <= successor.getPathCost()) {
+					continue;
+				}
+				seen.put(successor, successor);
+
+				if (closedList.contains(successor)) {
+					inconsistent.add(successor);
+				}
+				else {
+					openList.add(successor);
+				}
+			}
+		}
+
+		return best;
+	}
+
+	@Override
+	public String getName() {
+		return "ara (weight " + initialWeight + ", step " + weightStep + ", time limit " + timeLimit + " ms)";
+	}
+}
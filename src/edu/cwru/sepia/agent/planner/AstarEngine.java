@@ -0,0 +1,113 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.List;
+
+/**
+ * A* search over GameStates ordered by the evaluator of the initial state. Every distinct state is queued at most
+ * once (IndexedOpenList) and expanded at most once (ClosedSet).
+ *
+ * With deferred evaluation the children are queued with an estimate taken from their parent and their heuristic is
+ * only computed when they come up. A child whose priority gets worse is queued again, so every expanded state is
+ * ordered by its own heuristic as in the eager search.
+ */
+public class AstarEngine extends SearchEngine {
+	private final boolean deferred;
+
+	// default constructor, children are evaluated when they are created
+	public AstarEngine() {
+		this(false);
+	}
+
+	/**
+	 * @param deferred True if the heuristic of a child is computed when it comes up instead of when it is created
+	 */
+	public AstarEngine(boolean deferred) {
+		this.deferred = deferred;
+	}
+
+	@Override
+	public GameState search(GameState startState) {
+		IndexedOpenList openList = new IndexedOpenList();
+		ClosedSet closedList = new ClosedSet();
+		GameState goal = null;
+
+		long generated = 0;
+		long evaluations = 0;
+		long requeued = 0;
+		if (deferred) {
+			Evaluator evaluator = startState.getEvaluator();
+			startState.reweigh(new Evaluator(evaluator.getGWeight(), evaluator.getHWeight(), evaluator.getHeuristic(), true));
+		}
+
+		// start with startState game state
+		openList.add(startState);
+
+		// performs A* Search when openList is not empty
+		while (!openList.isEmpty() && !this.isCancelled()) {
+			GameState current = openList.poll();
+
+			// a deferred state is queued again if its own heuristic puts it behind the next state
+			if (current.evaluateDeferred()) {
+				evaluations++;
+				if (!openList.isEmpty() && current.compareTo(openList.peek()) > 0) {
+					openList.add(current);
+					requeued++;
+					continue;
+				}
+			}
+
+			// plan is found when goal is reached
+			if (current.isGoal()) {
+				System.out.println("plan cost: " + current.getPathCost() + " turns, " + current.getEvaluator());
+				goal = current;
+				break;
+			}
+
+			// stop when the budget is used up
+			if (!this.spend(current)) {
+				break;
+			}
+
+			// goal is not reached so continue to find next successors
+			// put the current node to the closed list
+			closedList.add(current);
+
+			// get a list of successors of the current node
+			List<GameState> successorList = current.generateChildren();
+
+			// the closed node only keeps its packed state from now on
+			current.compact();
+
+			// add all the successors that were not expanded yet to the open list
+			generated += successorList.size();
+			for (GameState successor: successorList) {
+				if (closedList.contains(successor)) {
+					continue;
+				}
+				// the estimate of a deferred child depends on its parent, so the cheaper path replaces a queued state
+				// whatever the priorities of the two nodes
+				if (deferred) {
+					openList.addPath(successor);
+				}
+				else {
+					openList.add(successor);
+				}
+			}
+		}
+
+		if (deferred) {
+			System.out.println("deferred evaluation: " + evaluations + " of " + generated + " generated states evaluated, " + requeued + " queued again");
+		}
+
+		System.out.println(openList);
+		System.out.println(closedList);
+		printCacheStatistics(startState);
+
+		return goal;
+	}
+
+	@Override
+	public String getName() {
+		return deferred ? "astar (deferred evaluation)" : "astar";
+	}
+}
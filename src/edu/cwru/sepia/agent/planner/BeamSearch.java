@@ -0,0 +1,108 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Beam search. The states are expanded layer by layer: all children of the current layer form the next layer, and
+ * only the best beamWidth of them (by GameState.compareTo) are kept. Every layer takes at most beamWidth expansions,
+ * so the time and memory of the search are bounded by beamWidth * maxDepth even when no plan is found. The plan is
+ * not guaranteed to be optimal.
+ *
+ * Expanded states are remembered so a later layer does not search them again, and duplicates within a layer are
+ * merged into their cheapest node. The time, the number of kept states and the number of pruned states are printed
+ * for every layer.
+ */
+public class BeamSearch extends SearchEngine {
+	private final int beamWidth;
+	private final int maxDepth;
+
+	/**
+	 * @param beamWidth Number of states kept in each layer
+	 * @param maxDepth Number of layers searched before giving up
+	 */
+	public BeamSearch(int beamWidth, int maxDepth) {
+		this.beamWidth = Math.max(beamWidth, 1);
+		this.maxDepth = maxDepth;
+	}
+
+	@Override
+	public GameState search(GameState startState) {
+		ClosedSet closedList = new ClosedSet();
+		List<GameState> layer = new ArrayList<GameState>();
+		layer.add(startState);
+
+		long expansions = 0;
+		long pruned = 0;
+		GameState goal = startState.isGoal() ? startState : null;
+
+		boolean cutoff = false;
+
+		for (int depth = 1; depth <= maxDepth && goal == null && !layer.isEmpty() && !this.isCancelled(); depth++) {
+			long start = System.currentTimeMillis();
+
+			// the children of the whole layer, duplicates are merged into their cheapest node
+			HashMap<GameState, GameState> children = new HashMap<GameState, GameState>();
+			for (GameState state: layer) {
+				if (!this.spend(state)) {
+					cutoff = true;
+					break;
+				}
+				closedList.add(state);
+				List<GameState> successorList = state.generateChildren();
+				state.compact();
+				expansions++;
+
+				for (GameState successor: successorList) {
+					if (closedList.contains(successor)) {
+						continue;
+					}
+					GameState existing = children.get(successor);
+					if (existing == null || successor.getPathCost() < existing.getPathCost()) {
+						children.put(successor, successor);
+					}
+				}
+			}
+			// the budget ran out in the middle of the layer
+			if (cutoff) {
+				break;
+			}
+
+			List<GameState> nextLayer = new ArrayList<GameState>(children.values());
+
+			// the cheapest goal of the layer ends the search
+			for (GameState child: nextLayer) {
+				if (child.isGoal() && (goal == null || child.getPathCost() < goal.getPathCost())) {
+					goal = child;
+				}
+			}
+
+			// keep the best states of the layer
+			Collections.sort(nextLayer);
+			int layerPruned = Math.max(nextLayer.size() - beamWidth, 0);
+			if (layerPruned > 0) {
+				nextLayer = new ArrayList<GameState>(nextLayer.subList(0, beamWidth));
+			}
+			pruned += layerPruned;
+
+			System.out.println("beam layer " + depth + ": expanded " + layer.size() + ", kept " + nextLayer.size() + ", pruned " + layerPruned + ", " + (System.currentTimeMillis() - start) + " ms");
+			layer = nextLayer;
+		}
+
+		System.out.println("beam search: " + expansions + " expansions, " + pruned + " pruned");
+		System.out.println(closedList);
+		printCacheStatistics(startState);
+		if (goal != null) {
+			System.out.println("plan cost: " + goal.getPathCost() + " turns, " + goal.getEvaluator());
+		}
+
+		return goal;
+	}
+
+	@Override
+	public String getName() {
+		return "beam (width " + beamWidth + ", max depth " + maxDepth + ")";
+	}
+}
@@ -0,0 +1,50 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Heuristic that looks up the value of another heuristic in a HeuristicCache before computing it.
+ *
+ * States that share a key get the value of the first of them that was evaluated, so the key of the cache must hold
+ * everything the heuristic reads: the abstract key of HeuristicCache for the trip count heuristic and the exact key
+ * for the others. With the right key the estimates do not change when the heuristic is cached.
+ */
+public class CachedHeuristic implements Heuristic {
+	private final Heuristic heuristic;
+	private final HeuristicCache cache;
+
+	/**
+	 * @param heuristic The heuristic whose values are cached
+	 * @param cache The cache to use, it may be shared with other searches of the same problem
+	 */
+	public CachedHeuristic(Heuristic heuristic, HeuristicCache cache) {
+		this.heuristic = heuristic;
+		this.cache = cache;
+	}
+
+	@Override
+	public double estimate(GameState state) {
+		HeuristicCache.Key key = cache.keyOf(state);
+		Double value = cache.get(key);
+
+		if (value == null) {
+			value = heuristic.estimate(state);
+			cache.put(key, value);
+		}
+
+		return value;
+	}
+
+	@Override
+	public String getName() {
+		return heuristic.getName() + ", cached";
+	}
+
+	// get the heuristic whose values are cached
+	public Heuristic getHeuristic() {
+		return this.heuristic;
+	}
+
+	// get the cache of the heuristic values
+	public HeuristicCache getCache() {
+		return this.cache;
+	}
+}
@@ -0,0 +1,150 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Closed set used by the A* search to remember the GameStates that have already been expanded.
+ *
+ * The states are stored in an open addressing hash table (linear probing) keyed by the 64-bit fingerprint of the
+ * state, so checking if a successor was already expanded takes constant time instead of a linear scan over every
+ * closed node. A matching fingerprint is confirmed with GameState.equals before it counts as a duplicate.
+ *
+ * The set also counts how many lookups found a duplicate (hits) and how many did not (misses).
+ */
+public class ClosedSet {
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private long[] fingerprints;
+	private GameState[] states;
+	private int mask;
+	private int size = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	// default constructor
+	public ClosedSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	// constructor to create a closed set that can hold the expected number of states before growing
+	public ClosedSet(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+
+		this.fingerprints = new long[capacity];
+		this.states = new GameState[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Adds an expanded state to the closed set.
+	 *
+	 * @param state The state that was expanded
+	 * @return true if the state was added, false if an equal state was already in the set
+	 */
+	public boolean add(GameState state) {
+		// keep the load factor at or below 1/2 so probe sequences stay short
+		if ((size + 1) * 2 > states.length) {
+			resize(states.length * 2);
+		}
+
+		long fingerprint = state.getFingerprint();
+		int index = indexFor(fingerprint);
+
+		while (states[index] != null) {
+			if (fingerprints[index] == fingerprint && states[index].equals(state)) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+
+		fingerprints[index] = fingerprint;
+		states[index] = state;
+		size++;
+
+		return true;
+	}
+
+	/**
+	 * Checks if an equal state has already been expanded. Every call is recorded as a hit or a miss.
+	 *
+	 * @param state The state to look up
+	 * @return true if an equal state is in the closed set
+	 */
+	public boolean contains(GameState state) {
+		if (get(state) != null) {
+			hits++;
+			return true;
+		}
+
+		misses++;
+		return false;
+	}
+
+	/**
+	 * Returns the closed state that is equal to the given state without touching the hit and miss counters.
+	 *
+	 * @param state The state to look up
+	 * @return The equal closed state or null if none was expanded
+	 */
+	public GameState get(GameState state) {
+		long fingerprint = state.getFingerprint();
+		int index = indexFor(fingerprint);
+
+		while (states[index] != null) {
+			if (fingerprints[index] == fingerprint && states[index].equals(state)) {
+				return states[index];
+			}
+			index = (index + 1) & mask;
+		}
+
+		return null;
+	}
+
+	// get number of closed states
+	public int size() {
+		return this.size;
+	}
+
+	// get number of lookups that found an already expanded state
+	public long getHits() {
+		return this.hits;
+	}
+
+	// get number of lookups that did not find an already expanded state
+	public long getMisses() {
+		return this.misses;
+	}
+
+	// helper method to map a fingerprint to its home slot
+	private int indexFor(long fingerprint) {
+		return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+	}
+
+	// helper method to grow the table and reinsert all closed states
+	private void resize(int capacity) {
+		long[] oldFingerprints = this.fingerprints;
+		GameState[] oldStates = this.states;
+
+		this.fingerprints = new long[capacity];
+		this.states = new GameState[capacity];
+		this.mask = capacity - 1;
+
+		for (int i = 0; i < oldStates.length; i++) {
+			if (oldStates[i] != null) {
+				int index = indexFor(oldFingerprints[i]);
+				while (states[index] != null) {
+					index = (index + 1) & mask;
+				}
+				fingerprints[index] = oldFingerprints[i];
+				states[index] = oldStates[i];
+			}
+		}
+	}
+
+	/**
+	 * @return human readable summary of the closed set statistics.
+	 */
+	@Override
+	public String toString() {
+		return "closed states: " + size + ", duplicate hits: " + hits + ", misses: " + misses;
+	}
+}
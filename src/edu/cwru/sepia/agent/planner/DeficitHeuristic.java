@@ -0,0 +1,19 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Heuristic that uses the resource deficit of GameState.getCost(): the gold and wood still missing, minus the worth
+ * of the cargo that is already on its way, divided by the number of peasants. It is not measured in turns and is not
+ * admissible, but it is what the search was ordered by before the g + h evaluation was added.
+ */
+public class DeficitHeuristic implements Heuristic {
+
+	@Override
+	public double estimate(GameState state) {
+		return state.getCost();
+	}
+
+	@Override
+	public String getName() {
+		return "deficit";
+	}
+}
@@ -0,0 +1,226 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import edu.cwru.sepia.environment.model.state.ResourceType;
+
+/**
+ * Walking distances in turns between the key locations of the map (the townhall and every resource) and every map
+ * cell. Peasants walk in 8 directions and cannot walk through the townhall or a resource, so the Chebyshev distance
+ * can be much too low when a tree line or the townhall is in the way.
+ *
+ * One breadth-first search runs from every key location over the xExtent x yExtent grid when the StaticWorld is
+ * created. The search enters a blocked cell (another key location) but does not walk on from it, so the field also
+ * holds the distance to the other key locations. The results are kept in one ShortBuffer per location, so a distance
+ * is looked up in constant time. The buffers wrap the arrays of the searches, or are views of a mapped DistanceTable
+ * file, which is not copied. Cells that cannot be reached fall back to the Chebyshev distance.
+ *
+ * Location 0 is the townhall, location i + 1 is the resource with ResourceUnit.getIndex() i. Peasants are not
+ * obstacles since they move during the episode.
+ */
+public final class DistanceFields {
+	public static final short UNREACHABLE = Short.MAX_VALUE;
+
+	private static final int[] DX = { -1, -1, -1, 0, 0, 1, 1, 1 };
+	private static final int[] DY = { -1, 0, 1, -1, 1, -1, 0, 1 };
+
+	private final int xExtent;
+	private final int yExtent;
+	private final Position[] locations;
+
+	// [location].get(x * yExtent + y), only read with absolute gets so the buffers can be shared between threads
+	private final ShortBuffer[] fields;
+	// key location at every cell, -1 for free cells
+	private final int[] locationAt;
+
+	/**
+	 * Runs the breadth-first searches of a map.
+	 *
+	 * @param xExtent X dimension size of the map
+	 * @param yExtent Y dimension size of the map
+	 * @param townhallPosition Position of the townhall, null if there is none
+	 * @param resources Resources of the map, indexed by ResourceUnit.getIndex()
+	 */
+	public DistanceFields(int xExtent, int yExtent, Position townhallPosition, ResourceUnit[] resources) {
+		this(xExtent, yExtent, townhallPosition, resources, null);
+	}
+
+	/**
+	 * Uses fields that were computed before for the same map, e.g. mapped by DistanceTable. The searches run when
+	 * fields is null.
+	 *
+	 * @param xExtent X dimension size of the map
+	 * @param yExtent Y dimension size of the map
+	 * @param townhallPosition Position of the townhall, null if there is none
+	 * @param resources Resources of the map, indexed by ResourceUnit.getIndex()
+	 * @param fields One field of xExtent * yExtent cells per key location, or null
+	 */
+	DistanceFields(int xExtent, int yExtent, Position townhallPosition, ResourceUnit[] resources, ShortBuffer[] fields) {
+		this.xExtent = xExtent;
+		this.yExtent = yExtent;
+
+		this.locations = new Position[resources.length + 1];
+		locations[0] = townhallPosition;
+		for (ResourceUnit resource: resources) {
+			locations[resource.getIndex() + 1] = resource.getPosition();
+		}
+
+		this.locationAt = new int[xExtent * yExtent];
+		Arrays.fill(locationAt, -1);
+		for (int location = 0; location < locations.length; location++) {
+			if (this.inBounds(locations[location])) {
+				locationAt[this.cell(locations[location].x, locations[location].y)] = location;
+			}
+		}
+
+		if (fields == null) {
+			fields = new ShortBuffer[locations.length];
+			int[] queue = new int[xExtent * yExtent];
+			for (int location = 0; location < locations.length; location++) {
+				fields[location] = ShortBuffer.wrap(this.search(locations[location], queue));
+			}
+		}
+		this.fields = fields;
+	}
+
+	/**
+	 * Runs a breadth-first search from a cell that does not have to be a key location, with the same obstacles.
+	 *
+	 * @param source Cell the search starts from
+	 * @return walking distance from the cell to every map cell, UNREACHABLE for the cells that cannot be reached
+	 */
+	public short[] fieldFrom(Position source) {
+		return this.search(source, new int[xExtent * yExtent]);
+	}
+
+	// get the field of a key location, indexed by x * yExtent + y, the caller must not move its position
+	ShortBuffer getField(int location) {
+		return this.fields[location];
+	}
+
+	// helper method to run the breadth-first search from one key location
+	private short[] search(Position source, int[] queue) {
+		short[] field = new short[xExtent * yExtent];
+		Arrays.fill(field, UNREACHABLE);
+
+		if (!this.inBounds(source)) {
+			return field;
+		}
+
+		int head = 0;
+		int tail = 0;
+		field[this.cell(source.x, source.y)] = 0;
+		queue[tail++] = this.cell(source.x, source.y);
+
+		while (head < tail) {
+			int current = queue[head++];
+			int x = current / yExtent;
+			int y = current % yExtent;
+
+			for (int d = 0; d < DX.length; d++) {
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				if (nx < 0 || ny < 0 || nx >= xExtent || ny >= yExtent) {
+					continue;
+				}
+
+				int next = this.cell(nx, ny);
+				if (field[next] != UNREACHABLE) {
+					continue;
+				}
+				field[next] = (short) (field[current] + 1);
+
+				// a blocked cell gets its distance but the walk does not go through it
+				if (locationAt[next] == -1) {
+					queue[tail++] = next;
+				}
+			}
+		}
+
+		return field;
+	}
+
+	/**
+	 * @param location Index of the key location, 0 for the townhall and ResourceUnit.getIndex() + 1 for a resource
+	 * @param x X coordinate of the cell
+	 * @param y Y coordinate of the cell
+	 * @return turns needed to walk between the cell and the location
+	 */
+	public int distance(int location, int x, int y) {
+		Position target = locations[location];
+		if (x >= 0 && y >= 0 && x < xExtent && y < yExtent) {
+			short distance = fields[location].get(this.cell(x, y));
+			if (distance != UNREACHABLE) {
+				return distance;
+			}
+		}
+
+		return (target == null) ? 0 : Math.max(Math.abs(x - target.x), Math.abs(y - target.y));
+	}
+
+	/**
+	 * Walking distance between two positions. It is exact when one of them is a key location and the Chebyshev
+	 * distance otherwise.
+	 *
+	 * @param from Position the walk starts from
+	 * @param to Position the walk ends at
+	 * @return turns needed to walk between the positions
+	 */
+	public int distance(Position from, Position to) {
+		int location = this.locationOf(to);
+		if (location != -1) {
+			return this.distance(location, from.x, from.y);
+		}
+
+		location = this.locationOf(from);
+		if (location != -1) {
+			return this.distance(location, to.x, to.y);
+		}
+
+		return from.chebyshevDistance(to);
+	}
+
+	/**
+	 * Walking distance from every map cell to the nearest resource of a type, exhausted or not.
+	 *
+	 * @param resources Resources of the map, indexed by ResourceUnit.getIndex()
+	 * @param type Type of the resources
+	 * @return distances indexed by x * yExtent + y, UNREACHABLE everywhere when the map has no resource of the type
+	 */
+	public short[] nearestField(ResourceUnit[] resources, ResourceType type) {
+		short[] nearest = new short[xExtent * yExtent];
+		Arrays.fill(nearest, UNREACHABLE);
+
+		for (ResourceUnit resource: resources) {
+			if (resource.getResourceType() == type) {
+				ShortBuffer field = fields[resource.getIndex() + 1];
+				for (int cell = 0; cell < nearest.length; cell++) {
+					nearest[cell] = (short) Math.min(nearest[cell], field.get(cell));
+				}
+			}
+		}
+
+		return nearest;
+	}
+
+	// get key location at a position, -1 if the position is not a key location
+	public int locationOf(Position position) {
+		return this.inBounds(position) ? locationAt[this.cell(position.x, position.y)] : -1;
+	}
+
+	// get number of key locations, the townhall and the resources
+	public int getLocationCount() {
+		return this.locations.length;
+	}
+
+	// helper method to get the index of a cell in a field
+	private int cell(int x, int y) {
+		return x * yExtent + y;
+	}
+
+	// helper method to check if a position is on the map
+	private boolean inBounds(Position position) {
+		return position != null && position.x >= 0 && position.y >= 0 && position.x < xExtent && position.y < yExtent;
+	}
+}
@@ -0,0 +1,299 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Walking distances between every pair of key locations of the map: the townhall, every resource and the free cells
+ * around the townhall where the peasants stand after a deposit. Location 0 is the townhall, location i + 1 is the
+ * resource with ResourceUnit.getIndex() i, as in DistanceFields, and the cells around the townhall follow.
+ *
+ * The table is computed from the DistanceFields of the map and saved in the saves directory as a binary file named
+ * after a hash of the map layout (its size, the townhall and the resource positions and types). The next planning
+ * run on the same map, or the next episode of the same run, maps the file into memory instead of running the
+ * breadth-first searches again. The file also holds the distance fields; the pair distances and the DistanceFields
+ * of a loaded table are views of the mapped file, so nothing is copied out of it.
+ *
+ * File layout, big endian: magic, version, layout hash, xExtent, yExtent, number of field locations, number of key
+ * locations, the x and y of every key location, the fields (one short per cell per field location) and the pair
+ * distances (one short per pair). A file that does not match the map is ignored and written again.
+ */
+public final class DistanceTable {
+	public static final int MAGIC = 0x53445442;
+	public static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4 + 4;
+
+	private final int xExtent;
+	private final int yExtent;
+	private final Position[] keyLocations;
+	// index of the key location at every cell x * yExtent + y, -1 for the other cells
+	private final int[] keyIndexAt;
+	private final DistanceFields distanceFields;
+	// [a * keyLocations.length + b], backed by the mapped file when the table was loaded
+	private final ShortBuffer pairs;
+	private final boolean loaded;
+
+	// constructor for a table that is computed or read back
+	private DistanceTable(int xExtent, int yExtent, Position[] keyLocations, DistanceFields distanceFields, ShortBuffer pairs, boolean loaded) {
+		this.xExtent = xExtent;
+		this.yExtent = yExtent;
+		this.keyLocations = keyLocations;
+		this.distanceFields = distanceFields;
+		this.pairs = pairs;
+		this.loaded = loaded;
+
+		this.keyIndexAt = new int[xExtent * yExtent];
+		Arrays.fill(keyIndexAt, -1);
+		for (int i = 0; i < keyLocations.length; i++) {
+			if (keyLocations[i] != null && keyLocations[i].inBounds(xExtent, yExtent)) {
+				keyIndexAt[keyLocations[i].x * yExtent + keyLocations[i].y] = i;
+			}
+		}
+	}
+
+	/**
+	 * Reads the table of a map from the directory, or computes it and saves it there when there is no valid file.
+	 * A file that cannot be read or written only costs the time of the searches.
+	 *
+	 * @param directory Directory of the table files, usually saves, or null to compute the table without a file
+	 * @param xExtent X dimension size of the map
+	 * @param yExtent Y dimension size of the map
+	 * @param townhallPosition Position of the townhall, null if there is none
+	 * @param resources Resources of the map, indexed by ResourceUnit.getIndex()
+	 * @return the table of the map
+	 */
+	public static DistanceTable load(File directory, int xExtent, int yExtent, Position townhallPosition, ResourceUnit[] resources) {
+		Position[] keyLocations = keyLocations(xExtent, yExtent, townhallPosition, resources);
+		if (directory == null) {
+			return compute(xExtent, yExtent, townhallPosition, resources, keyLocations);
+		}
+
+		long hash = layoutHash(xExtent, yExtent, townhallPosition, resources);
+		File file = new File(directory, "distances-" + Long.toHexString(hash) + ".bin");
+
+		if (file.isFile()) {
+			try {
+				DistanceTable table = read(file, hash, xExtent, yExtent, townhallPosition, resources, keyLocations);
+				if (table != null) {
+					return table;
+				}
+			} catch (IOException e) {
+				System.err.println("Cannot read distance table " + file + ": " + e.getMessage());
+			}
+		}
+
+		DistanceTable table = compute(xExtent, yExtent, townhallPosition, resources, keyLocations);
+		try {
+			table.write(directory, file, hash, xExtent, yExtent);
+		} catch (IOException e) {
+			System.err.println("Cannot write distance table " + file + ": " + e.getMessage());
+		}
+
+		return table;
+	}
+
+	// helper method to run the breadth-first searches and fill the pair distances
+	private static DistanceTable compute(int xExtent, int yExtent, Position townhallPosition, ResourceUnit[] resources, Position[] keyLocations) {
+		DistanceFields fields = new DistanceFields(xExtent, yExtent, townhallPosition, resources);
+		int keyCount = keyLocations.length;
+		ShortBuffer pairs = ShortBuffer.allocate(keyCount * keyCount);
+
+		for (int a = 0; a < keyCount; a++) {
+			// the townhall and the resources have a field already, the cells around the townhall get one here
+			ShortBuffer field = (a < fields.getLocationCount()) ? fields.getField(a) : ShortBuffer.wrap(fields.fieldFrom(keyLocations[a]));
+			for (int b = 0; b < keyCount; b++) {
+				pairs.put(a * keyCount + b, distanceAt(field, keyLocations[a], keyLocations[b], xExtent, yExtent));
+			}
+		}
+
+		return new DistanceTable(xExtent, yExtent, keyLocations, fields, pairs, false);
+	}
+
+	// helper method to get the distance to a cell from a field, the Chebyshev distance when the cell is not reached
+	private static short distanceAt(ShortBuffer field, Position from, Position to, int xExtent, int yExtent) {
+		if (from == null || to == null) {
+			return 0;
+		}
+		if (to.x >= 0 && to.y >= 0 && to.x < xExtent && to.y < yExtent) {
+			short distance = field.get(to.x * yExtent + to.y);
+			if (distance != DistanceFields.UNREACHABLE) {
+				return distance;
+			}
+		}
+
+		return (short) from.chebyshevDistance(to);
+	}
+
+	// helper method to map a table file and check that it belongs to the map, returns null if it does not
+	private static DistanceTable read(File file, long hash, int xExtent, int yExtent, Position townhallPosition, ResourceUnit[] resources, Position[] keyLocations) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = input.getChannel();
+			if (channel.size() < HEADER_BYTES) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			int fieldCount = resources.length + 1;
+			int keyCount = keyLocations.length;
+			int cells = xExtent * yExtent;
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != hash
+					|| buffer.getInt() != xExtent || buffer.getInt() != yExtent
+					|| buffer.getInt() != fieldCount || buffer.getInt() != keyCount) {
+				return null;
+			}
+			if (channel.size() != HEADER_BYTES + 8L * keyCount + 2L * cells * fieldCount + 2L * keyCount * keyCount) {
+				return null;
+			}
+
+			// the hash could collide, so the key locations are compared as well
+			for (Position location: keyLocations) {
+				int x = buffer.getInt();
+				int y = buffer.getInt();
+				if (location == null ? (x != -1 || y != -1) : (x != location.x || y != location.y)) {
+					return null;
+				}
+			}
+
+			// every field and the pairs are views of the mapping, which stays valid after the file is closed
+			ShortBuffer[] fields = new ShortBuffer[fieldCount];
+			for (int location = 0; location < fieldCount; location++) {
+				ShortBuffer field = buffer.asShortBuffer();
+				field.limit(cells);
+				fields[location] = field.slice();
+				buffer.position(buffer.position() + 2 * cells);
+			}
+			ShortBuffer pairs = buffer.slice().asShortBuffer();
+
+			DistanceFields distanceFields = new DistanceFields(xExtent, yExtent, townhallPosition, resources, fields);
+			return new DistanceTable(xExtent, yExtent, keyLocations, distanceFields, pairs, true);
+		} finally {
+			input.close();
+		}
+	}
+
+	// helper method to save the table, it is written to a temporary file first so a reader never sees half a file
+	private void write(File directory, File file, long hash, int xExtent, int yExtent) throws IOException {
+		directory.mkdirs();
+		File temporary = File.createTempFile("distances", ".tmp", directory);
+
+		int fieldCount = distanceFields.getLocationCount();
+		int keyCount = keyLocations.length;
+		int cells = xExtent * yExtent;
+		long size = HEADER_BYTES + 8L * keyCount + 2L * cells * fieldCount + 2L * keyCount * keyCount;
+
+		RandomAccessFile output = new RandomAccessFile(temporary, "rw");
+		try {
+			output.setLength(size);
+			MappedByteBuffer buffer = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+			buffer.putInt(MAGIC).putInt(VERSION).putLong(hash).putInt(xExtent).putInt(yExtent).putInt(fieldCount).putInt(keyCount);
+			for (Position location: keyLocations) {
+				buffer.putInt((location == null) ? -1 : location.x).putInt((location == null) ? -1 : location.y);
+			}
+			for (int location = 0; location < fieldCount; location++) {
+				buffer.asShortBuffer().put(distanceFields.getField(location).duplicate());
+				buffer.position(buffer.position() + 2 * cells);
+			}
+			for (int i = 0; i < keyCount * keyCount; i++) {
+				buffer.putShort(pairs.get(i));
+			}
+			buffer.force();
+		} finally {
+			output.close();
+		}
+
+		if (!temporary.renameTo(file)) {
+			// another run saved the same table first
+			temporary.delete();
+		}
+	}
+
+	// helper method to list the key locations: the townhall, the resources and the free cells around the townhall
+	private static Position[] keyLocations(int xExtent, int yExtent, Position townhallPosition, ResourceUnit[] resources) {
+		List<Position> locations = new ArrayList<Position>();
+		locations.add(townhallPosition);
+		for (int i = 0; i < resources.length; i++) {
+			locations.add(null);
+		}
+		for (ResourceUnit resource: resources) {
+			locations.set(resource.getIndex() + 1, resource.getPosition());
+		}
+
+		if (townhallPosition != null) {
+			for (Position adjacent: townhallPosition.getAdjacentPositions()) {
+				if (adjacent.inBounds(xExtent, yExtent) && !locations.contains(adjacent)) {
+					locations.add(adjacent);
+				}
+			}
+		}
+
+		return locations.toArray(new Position[locations.size()]);
+	}
+
+	// helper method to hash the parts of the map that decide the distances
+	private static long layoutHash(int xExtent, int yExtent, Position townhallPosition, ResourceUnit[] resources) {
+		long hash = 0xcbf29ce484222325L;
+
+		hash = mix(hash, xExtent);
+		hash = mix(hash, yExtent);
+		hash = mix(hash, (townhallPosition == null) ? -1 : townhallPosition.x);
+		hash = mix(hash, (townhallPosition == null) ? -1 : townhallPosition.y);
+		for (ResourceUnit resource: resources) {
+			hash = mix(hash, resource.getIndex());
+			hash = mix(hash, resource.getResourceType().ordinal());
+			hash = mix(hash, resource.getPosition().x);
+			hash = mix(hash, resource.getPosition().y);
+		}
+
+		return hash;
+	}
+
+	// helper method to add one value to an FNV-1a style hash
+	private static long mix(long hash, int value) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			hash ^= (value >>> shift) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * @param a Index of the first key location
+	 * @param b Index of the second key location
+	 * @return turns needed to walk between the two key locations
+	 */
+	public int distance(int a, int b) {
+		return pairs.get(a * keyLocations.length + b);
+	}
+
+	// get index of the key location at a position, -1 if the position is not a key location
+	public int indexOf(Position position) {
+		return position.inBounds(xExtent, yExtent) ? keyIndexAt[position.x * yExtent + position.y] : -1;
+	}
+
+	// get number of key locations
+	public int getKeyLocationCount() {
+		return this.keyLocations.length;
+	}
+
+	// get the distance fields of the map, read from the file when the table was loaded
+	public DistanceFields getDistanceFields() {
+		return this.distanceFields;
+	}
+
+	// get whether the table was read from a file instead of computed
+	public boolean isLoaded() {
+		return this.loaded;
+	}
+}
@@ -0,0 +1,135 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Enforced hill-climbing (EHC) as used by the FF planner. From the current state a breadth-first search runs until it
+ * finds a state with a lower heuristic value, which becomes the new current state; the search never goes back. Only
+ * the children produced by helpful actions of the relaxed plan are searched, which keeps the breadth-first searches
+ * small on the long harvest cycles of large goals.
+ *
+ * A breadth-first search that needs more than one step to improve is counted as a plateau escape. If it runs out of
+ * states, the helpful action pruning has cut off every improving path and the engine falls back to complete A*
+ * search from the initial state.
+ */
+public class EnforcedHillClimbing extends SearchEngine {
+	private long expansions = 0;
+	private long improvements = 0;
+	private long plateauEscapes = 0;
+	private long fallbacks = 0;
+
+	private volatile SearchEngine fallbackEngine;
+
+	@Override
+	public GameState search(GameState startState) {
+		RelaxedPlanningHeuristic relaxed = relaxedHeuristicOf(startState);
+		GameState current = startState;
+
+		while (current != null && !current.isGoal() && !this.isCancelled()) {
+			current = this.improve(current, relaxed);
+		}
+
+		// a search that ran out of budget does not fall back, the fallback would have no budget left either
+		if (current == null && !this.isCancelled() && this.getBudget().getReason() == SearchBudget.CutoffReason.NONE) {
+			System.out.println("EHC failed after " + expansions + " expansions, falling back to astar");
+			fallbacks++;
+			fallbackEngine = new AstarEngine();
+			fallbackEngine.setBudget(this.getBudget());
+			current = fallbackEngine.search(startState);
+		}
+		else if (current != null && current.isGoal()) {
+			System.out.println("plan cost: " + current.getPathCost() + " turns, " + current.getEvaluator());
+		}
+
+		System.out.println("EHC: " + expansions + " expansions, " + improvements + " improvements, " + plateauEscapes + " plateau escapes, " + fallbacks + " fallbacks");
+		printCacheStatistics(startState);
+
+		return current;
+	}
+
+	// helper method to run a breadth-first search over helpful children until a state with a lower heuristic is found
+	private GameState improve(GameState current, RelaxedPlanningHeuristic relaxed) {
+		double bound = current.getHeuristicValue();
+		ArrayDeque<GameState> queue = new ArrayDeque<GameState>();
+		HashSet<GameState> visited = new HashSet<GameState>();
+		queue.add(current);
+		visited.add(current);
+
+		while (!queue.isEmpty() && !this.isCancelled()) {
+			GameState state = queue.poll();
+			if (!this.spend(state)) {
+				return null;
+			}
+			// the helpful actions are computed once per state, usually together with its heuristic, and the
+			// children are filtered here, so they are generated without being reordered
+			List<RelaxedPlanningHeuristic.HelpfulAction> helpful = relaxed.getHelpfulActions(state);
+			List<GameState> successorList = state.generateChildren(false);
+			state.compact();
+			expansions++;
+
+			for (GameState successor: successorList) {
+				// a goal child is the only child generateChildren returns
+				if (!successor.isGoal() && !relaxed.isHelpful(successor.getAction(), helpful)) {
+					continue;
+				}
+				if (!visited.add(successor)) {
+					continue;
+				}
+				if (successor.isGoal() || successor.getHeuristicValue() < bound) {
+					improvements++;
+					if (state != current) {
+						plateauEscapes++;
+					}
+					return successor;
+				}
+				queue.add(successor);
+			}
+		}
+
+		return null;
+	}
+
+	// helper method to get the relaxed planning heuristic of the search, or a new one if the search uses another
+	private static RelaxedPlanningHeuristic relaxedHeuristicOf(GameState startState) {
+		Heuristic heuristic = startState.getEvaluator().getHeuristic();
+		if (heuristic instanceof CachedHeuristic) {
+			heuristic = ((CachedHeuristic) heuristic).getHeuristic();
+		}
+		if (heuristic instanceof RelaxedPlanningHeuristic) {
+			return (RelaxedPlanningHeuristic) heuristic;
+		}
+
+		return new RelaxedPlanningHeuristic(startState, RelaxedPlanningHeuristic.Mode.FF);
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		SearchEngine fallback = fallbackEngine;
+		if (fallback != null) {
+			fallback.cancel();
+		}
+	}
+
+	// get number of breadth-first searches that needed more than one step to improve the heuristic
+	public long getPlateauEscapes() {
+		return this.plateauEscapes;
+	}
+
+	// get number of times the search fell back to A*
+	public long getFallbacks() {
+		return this.fallbacks;
+	}
+
+	// get number of expanded states, not counting the fallback search
+	public long getExpansions() {
+		return this.expansions;
+	}
+
+	@Override
+	public String getName() {
+		return "ehc (helpful actions, astar fallback)";
+	}
+}
@@ -0,0 +1,85 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Combines the path cost g and the heuristic h of a GameState into the priority f used to order the open list:
+ *
+ *   f = gWeight * g + hWeight * h
+ *
+ * With both weights 1 this is A*, a larger hWeight gives weighted A* and gWeight 0 gives greedy best-first search.
+ * The evaluator is set on the root state and inherited by every child, so each state computes its values once when
+ * it is created.
+ *
+ * A deferred evaluator does not compute h when a child is created: the child is queued with the heuristic value of
+ * its parent minus the cost of the action, and the search computes h with GameState.evaluateDeferred() when the child comes up. Children that are
+ * never expanded are then never evaluated.
+ */
+public class Evaluator {
+	private final double gWeight;
+	private final double hWeight;
+	private final Heuristic heuristic;
+	private final boolean deferred;
+
+	// constructor for plain A* with the given heuristic
+	public Evaluator(Heuristic heuristic) {
+		this(1., 1., heuristic);
+	}
+
+	/**
+	 * @param gWeight Weight of the path cost
+	 * @param hWeight Weight of the heuristic
+	 * @param heuristic The heuristic that estimates the remaining cost
+	 */
+	public Evaluator(double gWeight, double hWeight, Heuristic heuristic) {
+		this(gWeight, hWeight, heuristic, false);
+	}
+
+	/**
+	 * @param gWeight Weight of the path cost
+	 * @param hWeight Weight of the heuristic
+	 * @param heuristic The heuristic that estimates the remaining cost
+	 * @param deferred True if children are evaluated when they are expanded instead of when they are created
+	 */
+	public Evaluator(double gWeight, double hWeight, Heuristic heuristic, boolean deferred) {
+		this.gWeight = gWeight;
+		this.hWeight = hWeight;
+		this.heuristic = heuristic;
+		this.deferred = deferred;
+	}
+
+	/**
+	 * @param pathCost The path cost g of a state
+	 * @param heuristicValue The heuristic value h of a state
+	 * @return The priority f of the state, lower is expanded first
+	 */
+	public double priority(double pathCost, double heuristicValue) {
+		return gWeight * pathCost + hWeight * heuristicValue;
+	}
+
+	// get weight of the path cost
+	public double getGWeight() {
+		return this.gWeight;
+	}
+
+	// get weight of the heuristic
+	public double getHWeight() {
+		return this.hWeight;
+	}
+
+	// get heuristic used for h
+	public Heuristic getHeuristic() {
+		return this.heuristic;
+	}
+
+	// check if children are evaluated when they are expanded
+	public boolean isDeferred() {
+		return this.deferred;
+	}
+
+	/**
+	 * @return human readable description of the priority formula
+	 */
+	@Override
+	public String toString() {
+		return "f = " + gWeight + " * g + " + hWeight + " * h (" + heuristic.getName() + (deferred ? ", deferred" : "") + ")";
+	}
+}
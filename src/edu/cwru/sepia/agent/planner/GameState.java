@@ -6,11 +6,9 @@ import edu.cwru.sepia.agent.planner.actions.Build_k;
 import edu.cwru.sepia.agent.planner.actions.Deposit_k;
 import edu.cwru.sepia.agent.planner.actions.Harvest_k;
 import edu.cwru.sepia.agent.planner.actions.Move_k;
-import edu.cwru.sepia.environment.model.state.ResourceNode;
 import edu.cwru.sepia.environment.model.state.ResourceType;
 import edu.cwru.sepia.environment.model.state.State;
 import edu.cwru.sepia.environment.model.state.Template.TemplateView;
-import edu.cwru.sepia.environment.model.state.Unit;
 import edu.cwru.sepia.util.Direction;
 
 import java.util.*;
@@ -49,35 +47,44 @@ import java.util.*;
 public class GameState implements Comparable<GameState> {
 	// private fields for GameState
 	
-	private State.StateView state;
-	private int playernum;
-	private int requiredGold;
-	private int requiredWood;
-	private boolean buildPeasants;
+	// map data that never changes during the search, shared by every state
+	private StaticWorld world;
 	
-	private int xExtent;
-	private int yExtent;
 	private int currentGold;
 	private int currentWood;
 	private int currentFood;
-	private ArrayList<Position> goldMineLocations;
-	private ArrayList<Position> treeLocations;
 	
-	private ArrayList<ResourceUnit> resourceList;
+	// dynamic part of the state packed with StateCodec: the peasants and the amount left in each resource
+	private int[] peasants;
+	private int[] resourceAmounts;
+	
+	// false while the array is still shared with the parent state (copy-on-write)
+	private boolean ownsPeasants = true;
+	private boolean ownsResourceAmounts = true;
 	
-	private ArrayList<Integer> peasantIDs;
+	// object views of the packed arrays, decoded on demand and released by compact()
 	private ArrayList<SimulatedUnit> peasantList;
-	private HashSet<Position> peasantPosition;
-	private int townhallID = -1;
-	private Position townhallPosition;
+	private ArrayList<ResourceUnit> resourceList;
 	
-	private ArrayList<Position> occupiedPositionList;
-	private ArrayList<Position> occupiedResourceList;
+	// Zobrist key of the gold, wood and resources, and sum of the peasant words (see ZobristKeys)
+	private long zobristKey;
+	private long peasantSum;
 	
 	private GameState parent;
 	private StripsAction actionPerformed;
+	
+	// slot of this state in the IndexedOpenList heap, -1 when it is not queued
+	int openIndex = -1;
 
-	public double cost = 0.;
+	// evaluation of the state: path cost g in turns, heuristic h and priority f, computed once when the state is created
+	private Evaluator evaluator;
+	private double pathCost = 0.;
+	private double heuristicValue = 0.;
+	private double priority = 0.;
+	// false while h is still the estimate of the parent, see Evaluator.isDeferred()
+	private boolean evaluated = false;
+	// helpful actions the relaxed planning heuristic found while computing h, null if they are not known
+	private List<RelaxedPlanningHeuristic.HelpfulAction> helpfulActions;
 		
     /**
      * Construct a GameState from a stateview object. This is used to construct the initial search node. All other
@@ -91,149 +98,61 @@ public class GameState implements Comparable<GameState> {
      */
     public GameState(State.StateView state, int playernum, int requiredGold, int requiredWood, boolean buildPeasants) {
         // TODO: Implement me!
-    	// stores the inputs given for initializing GameState
-    	this.state = state;
-    	this.playernum = playernum;
-    	this.requiredGold = requiredGold;
-    	this.requiredWood = requiredWood;
-    	this.buildPeasants = buildPeasants;
-    	
-    	// stores the x and y extent of the map
-    	this.xExtent = state.getXExtent();
-    	this.yExtent = state.getYExtent();
+    	// reads everything that does not change during the search once, the stateview is not kept
+    	this(new StaticWorld(state, playernum, requiredGold, requiredWood, buildPeasants));
+    }
+    
+    /**
+     * Construct the initial search node of a problem whose static part has already been read, so several searches
+     * can share one StaticWorld without a live stateview.
+     *
+     * @param world The static part of the problem
+     */
+    public GameState(StaticWorld world) {
+    	this.world = world;
+    	this.currentFood = world.getInitialFood();
     	
-    	occupiedPositionList = new ArrayList();
-    	occupiedResourceList = new ArrayList();
-    	List<Integer> resourceIDs = state.getAllResourceIds();
+    	// packs the peasants and resources of the initial state
+    	this.resourceAmounts = StateCodec.encodeResources(world.getResources());
+    	this.peasants = StateCodec.encodePeasants(world.getInitialPeasants());
+    	this.zobristKey = this.computeZobristKey();
+    	this.peasantSum = this.peasantKey();
     	
-    	// confirms that there are resources in the map
-    	if (resourceIDs.size()!=0) {
-	        List<ResourceNode.ResourceView> goldMineNodes = state.getResourceNodes(ResourceNode.Type.GOLD_MINE);
-	    	List<ResourceNode.ResourceView> treeNodes = state.getResourceNodes(ResourceNode.Type.TREE);
-	    	
-	    	this.goldMineLocations = new ArrayList<Position>();
-	        this.treeLocations = new ArrayList<Position>();
-	        this.resourceList = new ArrayList<ResourceUnit>();
-	        
-	        // stores the location of gold mines if they are present on the map
-	        if (goldMineNodes != null) {
-		        for (ResourceNode.ResourceView goldMine: goldMineNodes) {
-		        	goldMineLocations.add(new Position(goldMine.getXPosition(),goldMine.getYPosition()));
-		        	occupiedPositionList.add(new Position(goldMine.getXPosition(),goldMine.getYPosition()));
-		        	occupiedResourceList.add(new Position(goldMine.getXPosition(),goldMine.getYPosition()));
-		        	
-		        	resourceList.add(new ResourceUnit (goldMine.getID(), ResourceType.GOLD, goldMine.getAmountRemaining(),new Position(goldMine.getXPosition(),goldMine.getYPosition())));
-		        }
-	        }
-	        
-	        // stores the location of trees if they are present on the map
-	        if (treeNodes != null) {
-		        for (ResourceNode.ResourceView tree: treeNodes) {
-		        	treeLocations.add(new Position(tree.getXPosition(),tree.getYPosition()));
-		        	occupiedPositionList.add(new Position(tree.getXPosition(),tree.getYPosition()));
-		        	occupiedResourceList.add(new Position(tree.getXPosition(),tree.getYPosition()));
-		        	
-		        	resourceList.add(new ResourceUnit (tree.getID(), ResourceType.WOOD, tree.getAmountRemaining(),new Position(tree.getXPosition(),tree.getYPosition())));
-			        
-		        }
-	        }
-	        
+    	// A* with the admissible trip count heuristic unless the search sets another evaluator, the relaxed planning
+    	// heuristic weighs building peasants against harvesting when peasants may be built
+    	Heuristic heuristic;
+    	if (world.getBuildPeasants()) {
+    		heuristic = new RelaxedPlanningHeuristic(this, RelaxedPlanningHeuristic.Mode.FF);
     	}
-    	// returns message when no resources are found on map
     	else {
-    		System.out.println("No resources found on map");
-    	}
-    	
-    	List<Integer> unitIDs = state.getUnitIds(playernum);
-    	
-    	// stores the individual units in the game state
-        if(unitIDs.size() != 0){
-        	peasantIDs = new ArrayList<Integer>();
-        	peasantList = new ArrayList<SimulatedUnit>();
-        	
-        	for (Integer id: unitIDs) {
-        		Unit.UnitView temporaryUnit = state.getUnit(id);
-                String unitType = temporaryUnit.getTemplateView().getName().toLowerCase();
-                
-                // stores the footman IDs
-                if(unitType.equals("peasant"))
-                {
-                	peasantIDs.add(id);
-                	peasantList.add(new SimulatedUnit(temporaryUnit));
-                	occupiedPositionList.add(new Position(temporaryUnit.getXPosition(),temporaryUnit.getYPosition()));
-                	
-                	// each peasant uses 1 food;
-                	currentFood -= 1;
-                	
-                }
-                // stores the townhall ID
-                else if(unitType.equals("townhall"))
-                {
-                    townhallID =id;
-                    townhallPosition = new Position(temporaryUnit.getXPosition(),temporaryUnit.getYPosition());
-                    occupiedPositionList.add(townhallPosition);
-                    
-                    // townhall supplies 3 food
-                    currentFood = 3;
-                }
-                // returns error if unknown unit found
-                else
-                {
-                    System.err.println("Unknown unit type");
-                }
-                
-        	}
-        	
-        	// checks if footman IDs are successfully stored
-        	if (peasantIDs.size()==0) {
-        		System.err.println("No peasant found");
-        	}
-        	// checks if townhall IDs are successfully stored
-        	if (townhallID==-1) {
-        		System.err.println("No townhall found");
-        	}
-        }
-        // returns error message if no units found
-        else {
-        	System.err.println("No units found");
-        }
-        
-        // stores the location of the peasants if there are peasants on the map
-        if (peasantIDs.size()!=0) {
-        	this.peasantPosition = this.getPeasantPosition();
+    		heuristic = new TripCountHeuristic(this);
     	}
-          
+    	// the trip count is exact on the abstract cache key, the relaxed plan needs the exact key
+    	this.evaluator = new Evaluator(new CachedHeuristic(heuristic, new HeuristicCache(world, world.getBuildPeasants())));
+    	this.evaluate();
     }
     
     // constructor for generating new GameState when an action is performed
     public GameState (GameState parent, StripsAction actionPerformed) {
     	// copy over the field values from parents to new game state
-    	this.state = parent.state;
-    	this.playernum = parent.playernum;
-    	this.requiredGold = parent.requiredGold;
-    	this.requiredWood = parent.requiredWood;
-    	this.buildPeasants = parent.buildPeasants;
-    	this.xExtent = parent.xExtent;
-    	this.yExtent = parent.yExtent;
+    	this.world = parent.world;
     	this.currentGold = parent.currentGold;
     	this.currentWood = parent.currentWood;
     	this.currentFood = parent.currentFood;
-    	this.townhallID = parent.townhallID;
-    	this.cost = parent.cost;
-    	
-    	this.goldMineLocations = parent.goldMineLocations;
-    	this.treeLocations = parent.treeLocations;
-    	this.peasantIDs = parent.peasantIDs;
-    	this.peasantPosition = parent.peasantPosition;
-    	this.townhallPosition = parent.townhallPosition;
-    	this.occupiedPositionList = parent.occupiedPositionList;
-    	this.occupiedResourceList = parent.occupiedResourceList;
+    	this.evaluator = parent.evaluator;
+    	this.pathCost = parent.pathCost;
+    	this.zobristKey = parent.zobristKey;
+    	this.peasantSum = parent.peasantSum;
     	
-		// copy list of peasants from parents to new game state
-		this.peasantList = this.copyPeasantList(parent.peasantList);
+		// share the packed peasants and resources with the parent, they are only copied when this state changes them
+		this.peasants = parent.peasants;
+		this.ownsPeasants = false;
+		this.resourceAmounts = parent.resourceAmounts;
+		this.ownsResourceAmounts = false;
 		
-		// copy list of resources from parent to new game state
-		this.resourceList = this.copyResourceList(parent.resourceList);
+		// the decoded views stay valid until this state changes
+		this.peasantList = parent.peasantList;
+		this.resourceList = parent.resourceList;
 		
     	// store the parent node and action performed for the new game state
     	this.parent = parent;
@@ -241,36 +160,145 @@ public class GameState implements Comparable<GameState> {
 
     }
     
-    // helper method to copy the peasant list from parent
-    private ArrayList<SimulatedUnit> copyPeasantList(ArrayList<SimulatedUnit> parentList) {
-    	ArrayList<SimulatedUnit> copyList = new ArrayList<SimulatedUnit>();
+    // helper method to give this state its own packed peasants before one of them changes
+    private int[] ownPeasants() {
+    	if (!ownsPeasants) {
+    		this.peasants = peasants.clone();
+    		this.ownsPeasants = true;
+    	}
+    	// the decoded view no longer matches
+    	this.peasantList = null;
+    	
+    	return this.peasants;
+    }
+    
+    // helper method to give this state its own resource amounts before one of them changes
+    private int[] ownResourceAmounts() {
+    	if (!ownsResourceAmounts) {
+    		this.resourceAmounts = resourceAmounts.clone();
+    		this.ownsResourceAmounts = true;
+    	}
+    	// the decoded view no longer matches
+    	this.resourceList = null;
     	
-    	for (SimulatedUnit unit: parentList) {
-    		copyList.add(new SimulatedUnit(unit.getID(), unit.getPosition(), unit.getCargoAmount(), unit.getCargoType()));
+    	return this.resourceAmounts;
+    }
+    
+    /**
+     * Releases the decoded peasant and resource lists. The search calls this once a state has been expanded, so closed
+     * states only keep their packed arrays. The lists are decoded again if they are needed later.
+     */
+    public void compact() {
+    	this.peasantList = null;
+    	this.resourceList = null;
+    	this.helpfulActions = null;
+    }
+    
+    /**
+     * Sets the evaluator of the initial state and evaluates it again. Every child inherits the evaluator of its parent,
+     * so this must be called before the search starts.
+     *
+     * @param evaluator The evaluator that computes the priority of each state
+     */
+    public void setEvaluator(Evaluator evaluator) {
+    	this.evaluator = evaluator;
+    	this.evaluate();
+    }
+    
+    /**
+     * Switches this state to another evaluator that uses the same heuristic, e.g. with a smaller heuristic weight.
+     * Only the priority is computed again, the cached heuristic value is kept. Children created afterwards inherit
+     * the new evaluator.
+     *
+     * @param evaluator The evaluator with the new weights
+     */
+    public void reweigh(Evaluator evaluator) {
+    	this.evaluator = evaluator;
+    	this.priority = evaluator.priority(pathCost, heuristicValue);
+    }
+    
+    // helper method to cache the heuristic and priority of this state
+    private void evaluate() {
+    	this.heuristicValue = evaluator.getHeuristic().estimate(this);
+    	this.priority = evaluator.priority(pathCost, heuristicValue);
+    	this.evaluated = true;
+    }
+    
+    /**
+     * Computes the heuristic of a state that was created with a deferred evaluator and still has the estimate taken
+     * from its parent.
+     *
+     * @return true if the heuristic was computed now, false if the state was already evaluated
+     */
+    public boolean evaluateDeferred() {
+    	if (this.evaluated) {
+    		return false;
     	}
+    	this.evaluate();
     	
-    	return copyList;
+    	return true;
     }
     
-    // helper method to copy the resource list from parent
-    private ArrayList<ResourceUnit> copyResourceList(ArrayList<ResourceUnit> parentList) {
-    	ArrayList<ResourceUnit> copyList = new ArrayList<ResourceUnit>();
+    // helper method to add the duration of the action to the path cost of a new child and evaluate it
+    private GameState evaluateChild(GameState child) {
+    	child.pathCost = this.pathCost + child.actionPerformed.getDuration();
     	
-    	for (ResourceUnit unit: parentList) {
-    		copyList.add(new ResourceUnit(unit.getID(), unit.getResourceType(), unit.getAmountRemaining(), unit.getPosition()));
+    	// a deferred child is queued with the heuristic of its parent minus the action duration until it is expanded,
+    	// which does not overestimate the child when the heuristic is consistent
+    	if (evaluator.isDeferred() && !child.isGoal()) {
+    		child.heuristicValue = Math.max(this.heuristicValue - child.actionPerformed.getDuration(), 0.);
+    		child.priority = evaluator.priority(child.pathCost, child.heuristicValue);
+    	}
+    	else {
+    		child.evaluate();
     	}
     	
-    	return copyList;
+    	return child;
+    }
+    
+    // get helpful actions of the state, null if the relaxed planning heuristic has not computed them yet
+    public List<RelaxedPlanningHeuristic.HelpfulAction> getHelpfulActions() {
+    	return this.helpfulActions;
+    }
+    
+    // set helpful actions of the state, kept until the state is compacted
+    void setHelpfulActions(List<RelaxedPlanningHeuristic.HelpfulAction> helpfulActions) {
+    	this.helpfulActions = helpfulActions;
+    }
+    
+    // helper getter method to get the evaluator of the search
+    public Evaluator getEvaluator() {
+    	return this.evaluator;
+    }
+    
+    // helper getter method to get the path cost g in turns
+    public double getPathCost() {
+    	return this.pathCost;
+    }
+    
+    // helper getter method to get the cached heuristic value h
+    public double getHeuristicValue() {
+    	return this.heuristicValue;
+    }
+    
+    // helper getter method to get the cached priority f
+    public double getPriority() {
+    	return this.priority;
+    }
+    
+    // helper getter method to get the static part of the problem shared by every state
+    public StaticWorld getWorld() {
+    	return this.world;
     }
     
     // helper getter method to get xExtent
     public int getXExtent() {
-    	return this.xExtent;
+    	return world.getXExtent();
     }
     
     // helper getter method to get yExtent
     public int getYExtent() {
-    	return this.yExtent;
+    	return world.getYExtent();
     }
     
     // helper getter method to get parent of GameState
@@ -298,28 +326,48 @@ public class GameState implements Comparable<GameState> {
     	return this.currentFood;
     }
     
-    // helper getter method to get peasant list
+    // helper getter method to get peasant list, the list may be shared with other states so it must not be modified
     public ArrayList<SimulatedUnit> getPeasantList(){
+    	if (this.peasantList == null) {
+    		this.peasantList = StateCodec.decodePeasants(peasants);
+    	}
     	return this.peasantList;
     }
     
     // helper setter method to set peasant list
     public void setPeasantList(ArrayList<SimulatedUnit> peasantList){
+    	this.peasants = StateCodec.encodePeasants(peasantList);
+    	this.ownsPeasants = true;
     	this.peasantList = peasantList;
+    	this.peasantSum = this.peasantKey();
+    }
+    
+    // helper getter method to get the resources that are not exhausted, the list must not be modified
+    public ArrayList<ResourceUnit> getResourceList(){
+    	if (this.resourceList == null) {
+    		this.resourceList = StateCodec.decodeResources(resourceAmounts, world.getResources());
+    	}
+    	return this.resourceList;
+    }
+    
+    // helper getter method to get the packed peasants (see StateCodec), the array must not be modified
+    public int[] getPackedPeasants() {
+    	return this.peasants;
+    }
+    
+    // helper getter method to get the amount left in each resource, the array must not be modified
+    public int[] getResourceAmounts() {
+    	return this.resourceAmounts;
     }
     
     // helper getter method to get peasant position 
     public HashSet<Position> getPeasantPosition() {
     	HashSet<Position> peasantPosition = new HashSet<Position>();
     	
-    	if (peasantIDs.size()!= 0) {
-    		for (int i=0; i < peasantIDs.size(); i++) {
-    			peasantPosition.add(new Position(state.getUnit(i).getXPosition(),state.getUnit(i).getYPosition()));
-    		}
+    	for (int i = 0; i < StateCodec.peasantCount(peasants); i++) {
+    		peasantPosition.add(StateCodec.peasantPosition(peasants, i));
     	}
     	
-    	this.peasantPosition = peasantPosition;
-    	
     	return peasantPosition;
     }
     
@@ -334,7 +382,7 @@ public class GameState implements Comparable<GameState> {
         // TODO: Implement me!
     	
     	// check if enough gold and wood is available
-        if ((currentGold >= requiredGold) && (currentWood >= requiredWood)) {
+        if ((currentGold >= world.getRequiredGold()) && (currentWood >= world.getRequiredWood())) {
         	return true;
         }
         
@@ -349,73 +397,80 @@ public class GameState implements Comparable<GameState> {
      * @return A list of the possible successor states and their associated actions
      */
     public List<GameState> generateChildren() {
+    	return this.generateChildren(false);
+    }
+    
+    /**
+     * Generates the children of this state. The order only matters to engines that search the children in the order
+     * they are returned, best-first engines queue them by priority and should not ask for it.
+     *
+     * @param prioritize True to put the children of the helpful actions of the relaxed planning heuristic first
+     * @return A list of the possible successor states and their associated actions
+     */
+    public List<GameState> generateChildren(boolean prioritize) {
         // TODO: Implement me!
     	
     	List<GameState> childList = new ArrayList<GameState>();
     	
+    	// the preconditions are checked on this state so a child is only created for actions that can be applied
+    	
+    	ArrayList<SimulatedUnit> peasantList = this.getPeasantList();
+    	ArrayList<ResourceUnit> resourceList = this.getResourceList();
+    	List<Position> occupiedPositionList = world.getOccupiedPositionList();
+    	int requiredGold = world.getRequiredGold();
+    	int requiredWood = world.getRequiredWood();
+    	
     	// check if the game state meets the condition for building peasants and if it allows peasants to be built
-    	if (((this.currentGold >= 400) && (this.currentFood>=1)) && (this.buildPeasants == true)) {
-    		Build_k build = new Build_k(peasantList, occupiedPositionList, townhallID, townhallPosition, this.state.getTemplate(this.playernum, "Peasant").getID());
-    		GameState newState = new GameState(this, build);
+    	if (((this.currentGold >= 400) && (this.currentFood>=1)) && (world.getBuildPeasants() == true)) {
+    		Build_k build = new Build_k(peasantList, occupiedPositionList, world.getTownhallID(), world.getTownhallPosition(), world.getPeasantTemplateID());
     		
     		// add children if precondition for BUILD is met
-    		if (build.preconditionsMet(newState)) {
-    			newState = build.apply(newState);
-    			childList.add(newState);
+    		if (build.preconditionsMet(this)) {
+    			childList.add(this.evaluateChild(build.apply(this)));
     		}
     		
     	}
     	// focus on performing other tasks if peasants cannot be built
-		if (peasantList != null) {    		
+		if (StateCodec.peasantCount(peasants) > 0) {    		
     		// deposit cargo to townhall
-    		Deposit_k deposit = new Deposit_k(peasantList, this.townhallID, this.townhallPosition);
-			GameState newState = new GameState(this, deposit);
+    		Deposit_k deposit = new Deposit_k(peasantList, world.getTownhallID(), world.getTownhallPosition());
 			
 			// add children if precondition for deposit is met
-			if (deposit.preconditionsMet(newState)) {
-				newState = deposit.apply(newState);
-				childList.add(newState);
+			if (deposit.preconditionsMet(this)) {
+				childList.add(this.evaluateChild(deposit.apply(this)));
 			}
 			
 			// move to townhall
-			Move_k move = new Move_k(peasantList, occupiedPositionList, this.townhallPosition);
-			GameState moveToTownhallState = new GameState(this, move);
+			Move_k move = new Move_k(peasantList, occupiedPositionList, world.getTownhallPosition());
 
-			if (move.preconditionsMet(moveToTownhallState)) {
-				moveToTownhallState = move.apply(moveToTownhallState);
-				childList.add(moveToTownhallState);
+			if (move.preconditionsMet(this)) {
+				childList.add(this.evaluateChild(move.apply(this)));
 			}
 			
 			// move to gold
 			 if ((currentGold/requiredGold)<= (currentWood/requiredWood)) {
-				Move_k moveToGold = new Move_k(peasantList, occupiedPositionList, resourceList, ResourceType.GOLD);
-				GameState moveToGoldState = new GameState(this, moveToGold);
+				Move_k moveToGold = new Move_k(peasantList, occupiedPositionList, ResourceType.GOLD);
 
-				if (moveToGold.preconditionsMet(moveToGoldState)) {
-					moveToGoldState = moveToGold.apply(moveToGoldState);
-					childList.add(moveToGoldState);
+				if (moveToGold.preconditionsMet(this)) {
+					childList.add(this.evaluateChild(moveToGold.apply(this)));
 				}
 			}
 			 
 			 // move to wood
 			 if (((currentGold/requiredGold) > (currentWood/requiredWood))) {
-				Move_k moveToWood = new Move_k(peasantList, occupiedPositionList, resourceList, ResourceType.WOOD);
-				GameState moveToWoodState = new GameState(this, moveToWood);
+				Move_k moveToWood = new Move_k(peasantList, occupiedPositionList, ResourceType.WOOD);
 
-				if (moveToWood.preconditionsMet(moveToWoodState)) {
-					moveToWoodState = moveToWood.apply(moveToWoodState);
-					childList.add(moveToWoodState);
+				if (moveToWood.preconditionsMet(this)) {
+					childList.add(this.evaluateChild(moveToWood.apply(this)));
 				}
 			}
 			 
 			// harvest nearest resource: GOLD or WOOD
 			Harvest_k harvest = new Harvest_k(peasantList, resourceList);
-			GameState harvestState = new GameState(this, harvest);
 			
 			// add children if precondition for COLLECT is met
-			if (harvest.preconditionsMet(harvestState)) {
-				harvestState = harvest.apply(harvestState);
-				childList.add(harvestState);
+			if (harvest.preconditionsMet(this)) {
+				childList.add(this.evaluateChild(harvest.apply(this)));
 			}
 				
 		}
@@ -429,6 +484,15 @@ public class GameState implements Comparable<GameState> {
     		}
     	}
     	
+    	// the relaxed planning heuristic puts the children of its helpful actions first
+    	Heuristic heuristic = evaluator.getHeuristic();
+    	if (heuristic instanceof CachedHeuristic) {
+    		heuristic = ((CachedHeuristic) heuristic).getHeuristic();
+    	}
+    	if (prioritize && heuristic instanceof RelaxedPlanningHeuristic) {
+    		return ((RelaxedPlanningHeuristic) heuristic).prioritize(this, childList);
+    	}
+    	
         return childList;
     }
     
@@ -436,15 +500,21 @@ public class GameState implements Comparable<GameState> {
     public void buildPeasant() {
     	if (currentGold >= 400 && currentFood >= 1) {
     	// use up 400 gold and 1 food to build the peasant
+    	this.zobristKey ^= world.getZobristKeys().goldWord(currentGold) ^ world.getZobristKeys().goldWord(currentGold - 400);
     	this.currentGold = currentGold - 400;
     	this.currentFood = currentFood - 1;
     	
     	// adds a new peasant to the list of peasants
-    	peasantList.add(new SimulatedUnit(peasantList,occupiedPositionList,townhallPosition,xExtent,yExtent));
+    	SimulatedUnit peasant = new SimulatedUnit(this.getPeasantList(), world.getOccupiedPositionList(), world.getTownhallPosition(), world.getXExtent(), world.getYExtent());
+    	int slot = StateCodec.peasantCount(peasants);
+    	this.peasants = StateCodec.addPeasant(peasants, peasant);
+    	this.ownsPeasants = true;
+    	this.peasantList = null;
+    	this.peasantSum += this.peasantWord(slot);
     	
     	
     	// set target position of the action to the final position 
-    	this.actionPerformed.setTargetPos(this.peasantList.get(peasantList.size()-1).getPosition());
+    	this.actionPerformed.setTargetPos(peasant.getPosition());
     	}
     	else {
     		System.out.println("Precondition not met so cannot build peasant");
@@ -453,32 +523,42 @@ public class GameState implements Comparable<GameState> {
     
     // helper method to move peasants for Move_k
     public void movePeasant() {
-    	// loop through list to find the peasant that should be moved and change the peasant's position accordingly
-		for (int i = 0; i < peasantList.size(); i++) {
-			if (peasantList.get(i).getID()==this.actionPerformed.getActorID()) {
-				peasantList.get(i).setPosition(this.actionPerformed.getTargetPos());
+    	Position targetPos = this.actionPerformed.getTargetPos();
+    	
+    	// loop through the peasants to find the peasant that should be moved and change the peasant's position accordingly
+		for (int i = 0; i < StateCodec.peasantCount(peasants); i++) {
+			if (StateCodec.peasantID(peasants, i)==this.actionPerformed.getActorID()) {
+				this.peasantSum -= this.peasantWord(i);
+				StateCodec.setPosition(this.ownPeasants(), i, targetPos);
+				this.peasantSum += this.peasantWord(i);
 			}
 		}
     }
     
     // helper method to deposit cargo to townhall for Deposit_k
     public void depositCargo() {
-    	// loop through list to find the peasant that deposits the cargo
-		for (int i = 0; i < peasantList.size(); i++) {
-			if (peasantList.get(i).getID()==this.actionPerformed.getActorID()) {
+    	// loop through the peasants to find the peasant that deposits the cargo
+		for (int i = 0; i < StateCodec.peasantCount(peasants); i++) {
+			if (StateCodec.peasantID(peasants, i)==this.actionPerformed.getActorID()) {
+				ResourceType cargoType = StateCodec.cargoType(peasants, i);
+				int cargoAmount = StateCodec.cargoAmount(peasants, i);
 				
-				if (peasantList.get(i).getCargoAmount() > 0) {
+				if (cargoAmount > 0) {
 					// increase current gold cargo carried is gold
-					if (peasantList.get(i).getCargoType() == ResourceType.GOLD) {
-						this.currentGold += peasantList.get(i).getCargoAmount();
+					if (cargoType == ResourceType.GOLD) {
+						this.zobristKey ^= world.getZobristKeys().goldWord(currentGold) ^ world.getZobristKeys().goldWord(currentGold + cargoAmount);
+						this.currentGold += cargoAmount;
 					}
 					// increase current wood if cargo carried is wood
-					else if (peasantList.get(i).getCargoType() == ResourceType.WOOD) {
-						this.currentWood += peasantList.get(i).getCargoAmount();
+					else if (cargoType == ResourceType.WOOD) {
+						this.zobristKey ^= world.getZobristKeys().woodWord(currentWood) ^ world.getZobristKeys().woodWord(currentWood + cargoAmount);
+						this.currentWood += cargoAmount;
 					}
 					
 					// clears the cargo amount carried by the peasant
-					peasantList.get(i).setCargoAmount(0);
+					this.peasantSum -= this.peasantWord(i);
+					StateCodec.setCargo(this.ownPeasants(), i, cargoType, 0);
+					this.peasantSum += this.peasantWord(i);
 				}
 				else {
 					System.out.println("no cargo deposited");
@@ -489,55 +569,38 @@ public class GameState implements Comparable<GameState> {
     
     // helper method to collect resource
     public void collectResource() {
-    	for (int i = 0; i < peasantList.size(); i++) {
-			if (peasantList.get(i).getID()==this.actionPerformed.getActorID()) {
-				for (int j = 0; j < resourceList.size(); j++) {
+    	for (int i = 0; i < StateCodec.peasantCount(peasants); i++) {
+			if (StateCodec.peasantID(peasants, i)==this.actionPerformed.getActorID()) {
+				for (int j = 0; j < resourceAmounts.length; j++) {
+					ResourceUnit resource = world.getResources()[j];
+					int amountRemaining = resourceAmounts[j];
+					
 					// finds the resource that is being collected
-					if ((resourceList.get(j).getID() == this.actionPerformed.getTargetID()) && (resourceList.get(j).getPosition().equals(this.actionPerformed.getTargetPos()))) {
-						if (resourceList.get(j).getAmountRemaining()!=0) {
-							// check if gold is collected
-							if (resourceList.get(j).getResourceType().equals(ResourceType.GOLD)) {
-								// set cargo type to gold
-								peasantList.get(i).setCargoType(ResourceType.GOLD);
-								
-								// check if 100 gold can be removed from the mine
-								int goldRemainingAfterCollect = resourceList.get(j).getAmountRemaining() - 100;
-								
-								if (goldRemainingAfterCollect > 0) {
-									// set amount of gold carried to be 100
-									peasantList.get(i).setCargoAmount(100);
-									resourceList.get(j).setAmountRemaining(goldRemainingAfterCollect);
-								}
-								else {
-									// set the amount of cargo carried to what is remaining
-									peasantList.get(i).setCargoAmount(resourceList.get(j).getAmountRemaining());
-									
-									// clears the resource from the resource list as all gold are taken by peasant
-									resourceList.remove(j);
-								}
+					if ((resource.getID() == this.actionPerformed.getTargetID()) && (resource.getPosition().equals(this.actionPerformed.getTargetPos()))) {
+						if (amountRemaining!=0) {
+							// removes the old cargo and resource amount from the key, the new values are added back below unless
+							// the resource is exhausted
+							this.peasantSum -= this.peasantWord(i);
+							this.zobristKey ^= world.getZobristKeys().resourceWord(j, amountRemaining);
+							
+							// check if 100 gold or wood can be removed from the resource
+							int remainingAfterCollect = amountRemaining - 100;
+							
+							if (remainingAfterCollect > 0) {
+								// set amount of cargo carried to be 100
+								StateCodec.setCargo(this.ownPeasants(), i, resource.getResourceType(), 100);
+								this.ownResourceAmounts()[j] = remainingAfterCollect;
+								this.zobristKey ^= world.getZobristKeys().resourceWord(j, remainingAfterCollect);
 							}
 							else {
-								// set cargo type to wood
-								peasantList.get(i).setCargoType(ResourceType.WOOD);
-								
-								// check if 100 wood can be removed from the forest
-								int woodRemainingAfterCollect = resourceList.get(j).getAmountRemaining() - 100;
-								
-								if (woodRemainingAfterCollect > 0) {
-									// set amount of wood carried to be 100
-									peasantList.get(i).setCargoAmount(100);
-									resourceList.get(j).setAmountRemaining(woodRemainingAfterCollect);
-								}
-								else {
-									// set the amount of cargo carried to what is remaining
-									peasantList.get(i).setCargoAmount(resourceList.get(j).getAmountRemaining());
-									
-									// clears the resource from the resource list as all wood are taken by peasant
-									resourceList.remove(j);
-									
-								}
+								// set the amount of cargo carried to what is remaining
+								StateCodec.setCargo(this.ownPeasants(), i, resource.getResourceType(), amountRemaining);
 								
+								// clears the resource as all of it is taken by peasant
+								this.ownResourceAmounts()[j] = 0;
 							}
+							
+							this.peasantSum += this.peasantWord(i);
 						}
 					}
 				}
@@ -556,35 +619,8 @@ public class GameState implements Comparable<GameState> {
     public double heuristic() {
         // TODO: Implement me!
     	
-    	/**
-		 * provide a weight calculation for both wood and gold collection, according to the weight calculated, the 
-		 * agent will choose which one of the resources to collect while the distance is calculated by chebyshev 
-		 * distance.
-		*/
-    	// checks if the game is in need of more gold or more wood
-    	if(currentGold/requiredGold <= currentWood/requiredWood){
-			int shortestDistance = Integer.MAX_VALUE;
-			for (SimulatedUnit peasant: peasantList) {
-				Position peasantPosition = peasant.getPosition();
-				// get shortest distance to gold mine
-				shortestDistance = Math.min(peasantPosition.chebyshevDistance(this.getNearestResourcePosition(peasantPosition,ResourceType.GOLD)), shortestDistance);
-			}
-			
-			// heuristic is 1 over the shortest distance. Shorter distance = higher heuristic
-			return 1/shortestDistance; 
-		}
-		else{
-			int shortestDistance = Integer.MAX_VALUE;
-			for (SimulatedUnit peasant: peasantList) {
-				Position peasantPosition = peasant.getPosition();
-				// get shortest distance to wood
-				shortestDistance = Math.min(peasantPosition.chebyshevDistance(this.getNearestResourcePosition(peasantPosition, ResourceType.WOOD)), shortestDistance);
-			}
-			
-			// heuristic is 1 over the shortest distance. Shorter distance = higher heuristic
-			return 1/shortestDistance;
-		}
-
+    	// the heuristic of the evaluator is computed once when the state is created (see Heuristic)
+    	return this.heuristicValue;
     }
     
     /**
@@ -594,60 +630,27 @@ public class GameState implements Comparable<GameState> {
 	 * @return Return the nearest position of the designated resourceType.
 	 */ 
     public Position getNearestResourcePosition(Position p, ResourceType resourceType) {
-    	Position nearestPosition = null;
-    	if(resourceType.equals(resourceType.GOLD)){
-    		for (ResourceUnit list: resourceList) {
-    			if (list.getResourceType().equals(ResourceType.GOLD)) {
-    				Position goldMine = list.getPosition();
-		    		// initially store one of the resource locations as nearestPosition
-	    			if (nearestPosition == null) {
-	    				nearestPosition = goldMine;
-	    			}
-		    		// for all other resources, check if they are closer to the position p
-	    			else {
-	    				if (goldMine.chebyshevDistance(p) < nearestPosition.chebyshevDistance(p)) {
-	    					nearestPosition = goldMine;
-	    				}
-	    			}
-    			}
-    		}
-		}
-    	else if(resourceType.equals(resourceType.WOOD)){
-    		for (ResourceUnit list: resourceList) {
-    			if (list.getResourceType().equals(ResourceType.WOOD)) {
-    				Position tree = list.getPosition();
-    			// initially store one of the resource locations as nearestPosition
-    			if (nearestPosition == null) {
-    				nearestPosition = tree;
-    			}
-    			// for all other resources, check if they are closer to the position p
-    			else {
-    				if (tree.chebyshevDistance(p) < nearestPosition.chebyshevDistance(p)) {
-    					nearestPosition = tree;
-    				}
-    			}
-    			}
-    		}
-		}
-		else{
-			System.out.println(new IllegalArgumentException());
-		}
+    	int index = this.getNearestResourceIndex(p, resourceType);
     	
-    	return nearestPosition;
+    	return (index == -1) ? null : world.getResources()[index].getPosition();
+    }
+    
+    /**
+     * Finds the nearest resource of a type that is not exhausted in this state with the ResourceIndex of the world.
+     *
+     * @param p Position the distance is measured from
+     * @param resourceType Type of the resource
+     * @return ResourceUnit.getIndex() of the nearest resource, -1 if there is none
+     */
+    public int getNearestResourceIndex(Position p, ResourceType resourceType) {
+    	return world.getResourceIndex().nearest(resourceType, p.x, p.y, resourceAmounts);
     }
     
     // gets nearest resource ID
     private int getNearestResourceID(Position p, ResourceType resourceType) {
-    	Position nearestPosition = this.getNearestResourcePosition(p, resourceType);
-    	int nearestResourceID = - 1;
+    	int index = this.getNearestResourceIndex(p, resourceType);
     	
-    	for (ResourceUnit list: resourceList) {
-			if (list.getPosition().equals(nearestPosition)) {
-				nearestResourceID = list.getID();
-			}
-		}
-    	
-    	return nearestResourceID;
+    	return (index == -1) ? -1 : world.getResources()[index].getID();
     }
 
     /**
@@ -655,37 +658,43 @@ public class GameState implements Comparable<GameState> {
      * Write the function that computes the current cost to get to this node. This is combined with your heuristic to
      * determine which actions/states are better to explore.
      *
+     * This is the resource deficit estimate used by DeficitHeuristic, the path cost in turns is getPathCost().
+     *
      * @return The current cost to reach this goal
      */
     public double getCost() {
 		double goldWorth = 0.;
 		double woodWorth = 0.;
+		int peasantCount = StateCodec.peasantCount(peasants);
 				
-    	for (int i = 0; i < peasantList.size(); i++) {
+    	for (int i = 0; i < peasantCount; i++) {
+    		ResourceType cargoType = StateCodec.cargoType(peasants, i);
+    		int cargoAmount = StateCodec.cargoAmount(peasants, i);
+    		
 			// calculate harvested gold's worth
-			for (Position resourcePosition: this.goldMineLocations) {
-				if (peasantList.get(i).getPosition().equals(resourcePosition)) {
+			for (Position resourcePosition: world.getGoldMineLocations()) {
+				if (StateCodec.isAt(peasants, i, resourcePosition)) {
 					goldWorth += 25.;
-					if (peasantList.get(i).getCargoAmount() > 0 && peasantList.get(i).getCargoType() == ResourceType.GOLD) {
+					if (cargoAmount > 0 && cargoType == ResourceType.GOLD) {
 						goldWorth += 25.;
 					}
 					break;
 				}
 			}
 			// calculate harvested wood's worth
-			for (Position resourcePosition: this.treeLocations) {
-				if (peasantList.get(i).getPosition().equals(resourcePosition)) {
+			for (Position resourcePosition: world.getTreeLocations()) {
+				if (StateCodec.isAt(peasants, i, resourcePosition)) {
 					woodWorth += 25.;
-					if (peasantList.get(i).getCargoAmount() > 0 && peasantList.get(i).getCargoType() == ResourceType.WOOD) {
+					if (cargoAmount > 0 && cargoType == ResourceType.WOOD) {
 						woodWorth += 25.;
 					}
 					break;
 				}
 			}
 			// calculate deposited resource's worth
-			if (peasantList.get(i).getPosition().equals(this.townhallPosition)) {
-				if (peasantList.get(i).getCargoAmount() > 0) {
-					if (peasantList.get(i).getCargoType() == ResourceType.GOLD) {
+			if (StateCodec.isAt(peasants, i, world.getTownhallPosition())) {
+				if (cargoAmount > 0) {
+					if (cargoType == ResourceType.GOLD) {
 						goldWorth += 75.;
 					}
 					else {
@@ -694,7 +703,7 @@ public class GameState implements Comparable<GameState> {
 				}
 			}
 		}
-		return (Math.max(0., this.requiredGold - this.currentGold - goldWorth) + Math.max(0., this.requiredWood - this.currentWood - woodWorth)) / peasantList.size();
+		return (Math.max(0., world.getRequiredGold() - this.currentGold - goldWorth) + Math.max(0., world.getRequiredWood() - this.currentWood - woodWorth)) / peasantCount;
     }
 
     /**
@@ -707,17 +716,14 @@ public class GameState implements Comparable<GameState> {
     @Override
     public int compareTo(GameState o) {
         // TODO: Check me!
-        double cost1 = getCost();
-        double cost2 = o.getCost();
+        // order by the cached priority f, states that seem closer to the goal break ties
+        int result = Double.compare(this.priority, o.priority);
 
-        if (cost1 > cost2) {
-            return 1;
-        }
-        else if (cost1 < cost2) {
-            return -1;
+        if (result != 0) {
+            return result;
         }
 
-        return 0;
+        return Double.compare(this.heuristicValue, o.heuristicValue);
     }
 
     /**
@@ -734,20 +740,68 @@ public class GameState implements Comparable<GameState> {
     	if (o instanceof GameState) {
     		GameState compare = (GameState) o;
     		
+    		// states with different keys cannot be equal
+    		if (this.getFingerprint() != compare.getFingerprint()) {
+    			return false;
+    		}
+    		
     		return (
-    				// check if map boundary are the same
-    				(this.xExtent== compare.xExtent) && (this.yExtent== compare.yExtent) && 
-    				// check if required gold and wood are the same
-    				(this.requiredGold== compare.requiredGold) && (this.requiredWood== compare.requiredWood) && 
+    				// check if both states belong to the same problem
+    				(this.world == compare.world) && 
     				// check if current gold and wood are the same
     				(this.currentGold== compare.currentGold) && (this.currentWood== compare.currentWood) && 
-    				// check if peasantList is the same
-    				(this.peasantList.equals(compare.peasantList))
+    				// check if the peasants are the same, peasants with the same position and cargo are interchangeable
+    				StateCodec.samePeasants(this.peasants, compare.peasants) &&
+    				// check if the remaining resources are the same
+    				Arrays.equals(this.resourceAmounts, compare.resourceAmounts)
     				);
     	}
         return false;
     }
 
+    /**
+     * Returns the 64-bit Zobrist key of this state. It covers the fields that are compared in equals (gold, wood,
+     * peasants and remaining resources) and is kept up to date by the helper methods that the actions call, so it is
+     * read in constant time. Equal states always have the same fingerprint, so it can be used as the key of the
+     * closed set. The peasants are hashed without their ids and order, so states that only differ by a permutation
+     * of interchangeable peasants have the same fingerprint.
+     *
+     * @return 64-bit fingerprint of this state
+     */
+    public long getFingerprint() {
+    	return this.zobristKey ^ this.peasantSum;
+    }
+    
+    // helper method to compute the Zobrist key from scratch, only needed for the initial state
+    private long computeZobristKey() {
+    	long key = world.getZobristKeys().goldWord(currentGold) ^ world.getZobristKeys().woodWord(currentWood);
+    	
+    	for (int j = 0; j < resourceAmounts.length; j++) {
+    		// exhausted resources contribute no word
+    		if (resourceAmounts[j] > 0) {
+    			key ^= world.getZobristKeys().resourceWord(j, resourceAmounts[j]);
+    		}
+    	}
+    	
+    	return key;
+    }
+    
+    // helper method to compute the sum of the peasant words from scratch
+    private long peasantKey() {
+    	long key = 0L;
+    	
+    	for (int i = 0; i < StateCodec.peasantCount(peasants); i++) {
+    		key += this.peasantWord(i);
+    	}
+    	
+    	return key;
+    }
+    
+    // helper method to get the Zobrist word of peasant i, it does not depend on the id or the place in the list
+    private long peasantWord(int i) {
+    	return world.getZobristKeys().peasantWord(StateCodec.peasantX(peasants, i), StateCodec.peasantY(peasants, i), StateCodec.cargoType(peasants, i), StateCodec.cargoAmount(peasants, i));
+    }
+
     /**
      * This is necessary to use the GameState as a key in a HashSet or HashMap. Remember that if two objects are
      * equal they should hash to the same value.
@@ -756,19 +810,9 @@ public class GameState implements Comparable<GameState> {
      */
     @Override
     public int hashCode() {
-        // TODO: Implement me!
-    	int hash = 0;
-    	
-    	// compare two game state objects with the specified fields
-    	hash += this.playernum + this.requiredGold + this.requiredWood + this.xExtent + this.yExtent + this.currentGold + this.currentWood + this.currentFood+ this.townhallID + (int)this.getCost();
-    	
-    	for (SimulatedUnit unit: peasantList) {
-    		hash += Objects.hash(unit.getPosition(),unit.getCargoAmount());
-    	}
-    	
-    	// Object.hash 
-    	
-        return hash;
+    	// fold the 64-bit Zobrist key, it only uses fields that are compared in equals
+    	long key = this.getFingerprint();
+        return (int) (key ^ (key >>> 32));
     }
 	
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Estimate of the remaining cost from a GameState to a goal state. The estimate is computed once when a state is
+ * created and cached in the state (see Evaluator), so implementations may be more expensive than a comparison.
+ *
+ * One heuristic instance can be shared by several searches running at the same time, so implementations must not
+ * keep per-call state in fields without synchronizing it.
+ */
+public interface Heuristic {
+	/**
+	 * @param state The state to estimate
+	 * @return The estimated remaining cost of the state, 0 for goal states
+	 */
+	public double estimate(GameState state);
+
+	/**
+	 * @return short name of the heuristic used in the search statistics
+	 */
+	public String getName();
+}
@@ -0,0 +1,206 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.cwru.sepia.environment.model.state.ResourceType;
+
+/**
+ * Bounded LRU cache of heuristic values keyed by an abstraction of a GameState.
+ *
+ * An abstract key describes a state by its missing gold, missing wood and food, and the multiset of its peasants,
+ * where a peasant is described by its cargo and the walking distances from its cell to the nearest gold mine and the
+ * nearest tree. States that only differ in which of several equally far cells a peasant stands on therefore share one
+ * heuristic value. The trip count heuristic only reads these values, so it is exact on the abstract key.
+ *
+ * An exact key describes a state by its gold, wood, food, resource amounts and the multiset of its peasants with their
+ * cells and cargo, so only states that are equal up to the peasant ids share a value. It is used for heuristics that
+ * read more of the state, such as the relaxed planning heuristic.
+ *
+ * The cache is synchronized so one instance can be shared by several searches.
+ */
+public class HeuristicCache {
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private static final int MAX_DISTANCE = 4095;
+
+	private final int capacity;
+	private final boolean exact;
+	private final LinkedHashMap<Key, Double> values;
+
+	private final int requiredGold;
+	private final int requiredWood;
+	private final int yExtent;
+
+	// walking distance from every map cell to the nearest resource of each type, indexed by x * yExtent + y
+	private final short[] nearestGoldAt;
+	private final short[] nearestWoodAt;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	// constructor to create a cache of the default size
+	public HeuristicCache(StaticWorld world, boolean exact) {
+		this(world, DEFAULT_CAPACITY, exact);
+	}
+
+	/**
+	 * @param world The static part of the problem, used to classify the peasant positions
+	 * @param capacity Number of values kept before the least recently used one is evicted
+	 * @param exact True to key the values by the whole state instead of its abstraction
+	 */
+	public HeuristicCache(StaticWorld world, int capacity, boolean exact) {
+		this.capacity = capacity;
+		this.exact = exact;
+		this.values = new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+				if (size() > HeuristicCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+
+		this.requiredGold = world.getRequiredGold();
+		this.requiredWood = world.getRequiredWood();
+		this.yExtent = world.getYExtent();
+
+		this.nearestGoldAt = world.getDistanceFields().nearestField(world.getResources(), ResourceType.GOLD);
+		this.nearestWoodAt = world.getDistanceFields().nearestField(world.getResources(), ResourceType.WOOD);
+	}
+
+	/**
+	 * Looks up the cached heuristic value of a state. Every call is recorded as a hit or a miss.
+	 *
+	 * @param key Abstract key of the state (see keyOf)
+	 * @return The cached value or null if the key is not cached
+	 */
+	public synchronized Double get(Key key) {
+		Double value = values.get(key);
+
+		if (value != null) {
+			hits++;
+		}
+		else {
+			misses++;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Stores the heuristic value of a key, evicting the least recently used value when the cache is full.
+	 *
+	 * @param key Abstract key of the state
+	 * @param value The heuristic value
+	 */
+	public synchronized void put(Key key, double value) {
+		values.put(key, value);
+	}
+
+	/**
+	 * Builds the key of a state, abstract or exact depending on the cache.
+	 *
+	 * @param state The state to abstract
+	 * @return key shared by all states with the same abstraction
+	 */
+	public Key keyOf(GameState state) {
+		int[] peasants = state.getPackedPeasants();
+		int peasantCount = StateCodec.peasantCount(peasants);
+		int[] resourceAmounts = exact ? state.getResourceAmounts() : new int[0];
+		long[] data = new long[3 + peasantCount + resourceAmounts.length];
+
+		// the heuristics only count the missing amounts, but the relaxed plan pays for peasants with surplus gold
+		data[0] = exact ? state.getCurrentGold() : Math.max(requiredGold - state.getCurrentGold(), 0);
+		data[1] = exact ? state.getCurrentWood() : Math.max(requiredWood - state.getCurrentWood(), 0);
+		data[2] = state.getCurrentFood();
+
+		for (int i = 0; i < peasantCount; i++) {
+			int x = StateCodec.peasantX(peasants, i);
+			int y = StateCodec.peasantY(peasants, i);
+			ResourceType cargoType = StateCodec.cargoType(peasants, i);
+			long cargo = ((cargoType == null) ? 0 : cargoType.ordinal() + 1) * 128L + StateCodec.cargoAmount(peasants, i);
+
+			long place;
+			if (exact) {
+				place = ((long) x << 20) | (y & 0xfffff);
+			}
+			else {
+				place = nearest(nearestGoldAt, x, y) * (MAX_DISTANCE + 1L) + nearest(nearestWoodAt, x, y);
+			}
+			data[3 + i] = place * 512 + cargo;
+		}
+
+		// the peasants form a multiset, so their order does not matter
+		Arrays.sort(data, 3, 3 + peasantCount);
+
+		for (int j = 0; j < resourceAmounts.length; j++) {
+			data[3 + peasantCount + j] = resourceAmounts[j];
+		}
+
+		return new Key(data);
+	}
+
+	// helper method to get the walking distance of a cell to the nearest resource, capped at MAX_DISTANCE
+	private int nearest(short[] nearestAt, int x, int y) {
+		int index = x * yExtent + y;
+
+		return (x < 0 || y < 0 || y >= yExtent || index >= nearestAt.length) ? MAX_DISTANCE : Math.min(nearestAt[index], MAX_DISTANCE);
+	}
+
+	// get number of cached values
+	public synchronized int size() {
+		return values.size();
+	}
+
+	// get number of lookups that found a cached value
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	// get number of lookups that did not find a cached value
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	// get number of values that were evicted
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * @return human readable summary of the cache statistics.
+	 */
+	@Override
+	public synchronized String toString() {
+		return "heuristic cache: " + values.size() + "/" + capacity + ", hits: " + hits + ", misses: " + misses + ", evictions: " + evictions;
+	}
+
+	/**
+	 * Abstract key of a GameState.
+	 */
+	public static final class Key {
+		private final long[] data;
+		private final int hash;
+
+		// constructor for a key over the abstract state values
+		private Key(long[] data) {
+			this.data = data;
+			this.hash = Arrays.hashCode(data);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof Key) && Arrays.equals(data, ((Key) o).data);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
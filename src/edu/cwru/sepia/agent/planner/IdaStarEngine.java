@@ -0,0 +1,115 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Iterative deepening A* (IDA*). Each iteration is a depth-first search that cuts off every state whose f = g + h is
+ * above the bound; the next bound is the smallest f that was cut off. Only the current path and the children of the
+ * states on it are kept, so memory grows with the plan length instead of the number of states searched.
+ *
+ * A bounded TranspositionTable skips states that were already searched in the same iteration with a path that is not
+ * more expensive, and keeps the backed-up f-values of earlier iterations so whole subtrees that cannot fit under the
+ * new bound are not searched again.
+ */
+public class IdaStarEngine extends SearchEngine {
+	private static final double FOUND = -1.;
+
+	private final TranspositionTable table;
+
+	private GameState goal;
+	private int iteration = 0;
+	private long expansions = 0;
+
+	/**
+	 * @param tableSize Number of slots of the transposition table
+	 */
+	public IdaStarEngine(int tableSize) {
+		this.table = new TranspositionTable(tableSize);
+	}
+
+	@Override
+	public GameState search(GameState startState) {
+		double bound = startState.getPathCost() + startState.getHeuristicValue();
+		this.goal = null;
+
+		long start = System.currentTimeMillis();
+		while (!this.isCancelled()) {
+			iteration++;
+			double next = this.depthFirst(startState, bound);
+
+			if (next == FOUND || next == Double.POSITIVE_INFINITY) {
+				break;
+			}
+			bound = next;
+		}
+
+		System.out.println("IDA*: " + iteration + " iterations, last bound " + bound + ", " + expansions + " expansions, " + (System.currentTimeMillis() - start) + " ms");
+		System.out.println(table);
+		printCacheStatistics(startState);
+		if (goal != null) {
+			System.out.println("plan cost: " + goal.getPathCost() + " turns, " + goal.getEvaluator());
+		}
+
+		return goal;
+	}
+
+	// helper method to search below a state, returns FOUND or the smallest f above the bound
+	private double depthFirst(GameState state, double bound) {
+		long key = state.getFingerprint();
+		double f = state.getPathCost() + Math.max(state.getHeuristicValue(), table.getHeuristic(key));
+
+		if (f > bound) {
+			return f;
+		}
+		if (state.isGoal()) {
+			this.goal = state;
+			return FOUND;
+		}
+		if (this.isCancelled()) {
+			return Double.POSITIVE_INFINITY;
+		}
+		// the state was already searched in this iteration with a cheaper path, so its subtree cannot fit under the
+		// bound from here either; the backed-up value is only known once that search is finished
+		if (table.visit(key, state.getPathCost(), iteration)) {
+			double backedUp = state.getPathCost() + table.getHeuristic(key);
+			return (backedUp > bound) ? backedUp : Double.POSITIVE_INFINITY;
+		}
+
+		// a search that ran out of budget ends like a cancelled one
+		if (!this.spend(state)) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		// the helpful children come first among children with the same priority, since the depth-first search
+		// visits them in this order
+		List<GameState> children = state.generateChildren(true);
+		state.compact();
+		expansions++;
+
+		// search the most promising children first, the sort is stable
+		Collections.sort(children);
+
+		double next = Double.POSITIVE_INFINITY;
+		for (GameState child: children) {
+			double result = this.depthFirst(child, bound);
+			if (result == FOUND) {
+				return FOUND;
+			}
+			next = Math.min(next, result);
+		}
+
+		// remember how far the subtree is from fitting under the bound, a subtree that only led back into the current
+		// path is not a dead end from other paths
+		if (next < Double.POSITIVE_INFINITY) {
+			table.raiseHeuristic(key, next - state.getPathCost());
+		}
+
+		return next;
+	}
+
+	@Override
+	public String getName() {
+		return "ida";
+	}
+}
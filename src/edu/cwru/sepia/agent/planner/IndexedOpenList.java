@@ -0,0 +1,247 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Open list used by the A* search. It is a binary min-heap of GameStates ordered by GameState.compareTo together with
+ * an index from each queued state to its node, so every distinct state is queued at most once.
+ *
+ * When a state that is already queued is added again the two entries are merged: if the new node is better its
+ * heap slot is reused and sifted up (decrease-key in O(log n)), otherwise the new node is dropped. This keeps the
+ * open list at one entry per distinct state and avoids the O(n) scan of the queue on every insert.
+ */
+public class IndexedOpenList {
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private GameState[] heap;
+	private int size = 0;
+	private HashMap<GameState, GameState> queued;
+
+	private long inserts = 0;
+	private long decreasedKeys = 0;
+	private long merged = 0;
+	private int peakSize = 0;
+
+	// default constructor
+	public IndexedOpenList() {
+		this.heap = new GameState[DEFAULT_CAPACITY];
+		this.queued = new HashMap<GameState, GameState>();
+	}
+
+	/**
+	 * Adds a state to the open list or merges it with the equal state that is already queued.
+	 *
+	 * @param state The state to queue
+	 * @return true if the state was queued or replaced a worse entry, false if it was dropped as a duplicate
+	 */
+	public boolean add(GameState state) {
+		GameState existing = queued.get(state);
+
+		if (existing != null) {
+			// keep the existing entry unless the new node is strictly better
+			if (state.compareTo(existing) >= 0) {
+				merged++;
+				return false;
+			}
+
+			int index = existing.openIndex;
+			existing.openIndex = -1;
+			queued.put(state, state);
+			place(state, index);
+			siftUp(index);
+			decreasedKeys++;
+			return true;
+		}
+
+		if (size == heap.length) {
+			GameState[] newHeap = new GameState[heap.length * 2];
+			System.arraycopy(heap, 0, newHeap, 0, size);
+			heap = newHeap;
+		}
+
+		queued.put(state, state);
+		place(state, size);
+		siftUp(size++);
+		inserts++;
+		peakSize = Math.max(peakSize, size);
+
+		return true;
+	}
+
+	/**
+	 * Adds a state to the open list or, if an equal state is queued, keeps the node with the lower path cost. The
+	 * deferred search uses this since the priorities of two nodes of a state are built from the estimates of their
+	 * different parents, so a cheaper node can have an equal or higher priority and add would drop it.
+	 *
+	 * @param state The state to queue
+	 * @return true if the state was queued or replaced a more expensive entry, false if it was dropped as a duplicate
+	 */
+	public boolean addPath(GameState state) {
+		GameState existing = queued.get(state);
+
+		if (existing == null) {
+			return this.add(state);
+		}
+		if (state.getPathCost() >= existing.getPathCost()) {
+			merged++;
+			return false;
+		}
+
+		// the cheaper node takes the heap slot, its priority may be lower or higher than the old one
+		int index = existing.openIndex;
+		existing.openIndex = -1;
+		queued.put(state, state);
+		place(state, index);
+		siftUp(index);
+		siftDown(state.openIndex);
+		decreasedKeys++;
+
+		return true;
+	}
+
+	/**
+	 * Removes and returns the best state in the open list.
+	 *
+	 * @return The state with the lowest priority or null if the open list is empty
+	 */
+	public GameState poll() {
+		if (size == 0) {
+			return null;
+		}
+
+		GameState best = heap[0];
+		size--;
+		if (size > 0) {
+			place(heap[size], 0);
+			siftDown(0);
+		}
+		heap[size] = null;
+
+		best.openIndex = -1;
+		queued.remove(best);
+
+		return best;
+	}
+
+	/**
+	 * @return The best state in the open list without removing it, or null if the open list is empty
+	 */
+	public GameState peek() {
+		return (size == 0) ? null : heap[0];
+	}
+
+	/**
+	 * Returns the queued state that is equal to the given state.
+	 *
+	 * @param state The state to look up
+	 * @return The queued equal state or null if no such state is queued
+	 */
+	public GameState get(GameState state) {
+		return queued.get(state);
+	}
+
+	/**
+	 * Removes all states from the open list, e.g. to queue them again after their priorities changed.
+	 *
+	 * @return The states that were queued, in no particular order
+	 */
+	public List<GameState> drain() {
+		List<GameState> states = new ArrayList<GameState>(size);
+
+		for (int i = 0; i < size; i++) {
+			heap[i].openIndex = -1;
+			states.add(heap[i]);
+			heap[i] = null;
+		}
+		size = 0;
+		queued.clear();
+
+		return states;
+	}
+
+	// check if the open list is empty
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// get number of queued states
+	public int size() {
+		return this.size;
+	}
+
+	// get number of states that were queued as new entries
+	public long getInserts() {
+		return this.inserts;
+	}
+
+	// get number of queued entries that were replaced by a better node
+	public long getDecreasedKeys() {
+		return this.decreasedKeys;
+	}
+
+	// get number of duplicate nodes that were dropped
+	public long getMerged() {
+		return this.merged;
+	}
+
+	// get the largest number of states that were queued at the same time
+	public int getPeakSize() {
+		return this.peakSize;
+	}
+
+	// helper method to store a state in a heap slot and remember the slot in the state
+	private void place(GameState state, int index) {
+		heap[index] = state;
+		state.openIndex = index;
+	}
+
+	// helper method to move a state towards the root until its parent is not worse
+	private void siftUp(int index) {
+		GameState state = heap[index];
+
+		while (index > 0) {
+			int parentIndex = (index - 1) >>> 1;
+			GameState parent = heap[parentIndex];
+			if (state.compareTo(parent) >= 0) {
+				break;
+			}
+			place(parent, index);
+			index = parentIndex;
+		}
+
+		place(state, index);
+	}
+
+	// helper method to move a state towards the leaves until no child is better
+	private void siftDown(int index) {
+		GameState state = heap[index];
+		int half = size >>> 1;
+
+		while (index < half) {
+			int childIndex = 2 * index + 1;
+			GameState child = heap[childIndex];
+			int rightIndex = childIndex + 1;
+			if (rightIndex < size && heap[rightIndex].compareTo(child) < 0) {
+				childIndex = rightIndex;
+				child = heap[childIndex];
+			}
+			if (state.compareTo(child) <= 0) {
+				break;
+			}
+			place(child, index);
+			index = childIndex;
+		}
+
+		place(state, index);
+	}
+
+	/**
+	 * @return human readable summary of the open list statistics.
+	 */
+	@Override
+	public String toString() {
+		return "open states: " + size + ", inserts: " + inserts + ", decreased keys: " + decreasedKeys + ", merged duplicates: " + merged + ", peak size: " + peakSize;
+	}
+}
@@ -0,0 +1,180 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Greedy best-first search with one open queue per heuristic. The queues take turns in expanding their
+ * best state, and every generated state is put in all queues, so a state that one heuristic ranks badly because of a
+ * blind spot can still be reached through another. Each queue counts its expansions and the queue with the lowest
+ * count expands next. A state expanded from one queue stays in the other queues and is skipped when it comes up
+ * there (lazy deletion).
+ *
+ * A queue that makes progress, i.e. gets a state with a heuristic value better than the best it has seen, is boosted:
+ * it gets the next BOOST expansions before the other queues have their turn. Progress made while a queue is still
+ * boosted does not extend the boost, so a heuristic that improves on every step cannot starve the others.
+ *
+ * The first queue uses the heuristic of the initial state, the others are given to the constructor. The plan is not
+ * guaranteed to be optimal.
+ */
+public class MultiQueueSearch extends SearchEngine {
+	public static final int BOOST = 10;
+
+	private final List<Heuristic> extraHeuristics;
+
+	/**
+	 * @param extraHeuristics Heuristics of the queues next to the one of the initial state
+	 */
+	public MultiQueueSearch(List<Heuristic> extraHeuristics) {
+		this.extraHeuristics = extraHeuristics;
+	}
+
+	@Override
+	public GameState search(GameState startState) {
+		List<Heuristic> heuristics = new ArrayList<Heuristic>();
+		heuristics.add(startState.getEvaluator().getHeuristic());
+		heuristics.addAll(extraHeuristics);
+
+		int queueCount = heuristics.size();
+		List<PriorityQueue<Entry>> queues = new ArrayList<PriorityQueue<Entry>>();
+		double[] bestValues = new double[queueCount];
+		long[] expansions = new long[queueCount];
+		long[] boosts = new long[queueCount];
+		for (int i = 0; i < queueCount; i++) {
+			queues.add(new PriorityQueue<Entry>());
+			bestValues[i] = Double.POSITIVE_INFINITY;
+		}
+
+		// states are queued once, when they are first generated
+		HashSet<GameState> generated = new HashSet<GameState>();
+		ClosedSet closedList = new ClosedSet();
+		generated.add(startState);
+		this.push(startState, heuristics, queues, bestValues);
+
+		GameState goal = startState.isGoal() ? startState : null;
+		long stale = 0;
+
+		// the queue with the lowest count expands next, a boost lowers the count of a queue by BOOST
+		long[] counts = new long[queueCount];
+
+		while (goal == null && !this.isCancelled()) {
+			int queue = -1;
+			for (int i = 0; i < queueCount; i++) {
+				if (!queues.get(i).isEmpty() && (queue == -1 || counts[i] < counts[queue])) {
+					queue = i;
+				}
+			}
+			if (queue == -1) {
+				break;
+			}
+
+			Entry entry = queues.get(queue).poll();
+			if (closedList.contains(entry.state)) {
+				stale++;
+				continue;
+			}
+
+			GameState current = entry.state;
+			if (!this.spend(current)) {
+				break;
+			}
+			closedList.add(current);
+			List<GameState> successorList = current.generateChildren();
+			current.compact();
+			expansions[queue]++;
+			counts[queue]++;
+
+			boolean[] progress = new boolean[queueCount];
+			for (GameState successor: successorList) {
+				if (successor.isGoal()) {
+					goal = successor;
+					break;
+				}
+				if (generated.add(successor)) {
+					boolean[] improved = this.push(successor, heuristics, queues, bestValues);
+					for (int i = 0; i < queueCount; i++) {
+						progress[i] |= improved[i];
+					}
+				}
+			}
+
+			// a queue whose best value improved is preferred for the next BOOST expansions, unless it is still using
+			// an earlier boost
+			long[] before = counts.clone();
+			for (int i = 0; i < queueCount; i++) {
+				long lowestOther = Long.MAX_VALUE;
+				for (int j = 0; j < queueCount; j++) {
+					if (j != i) {
+						lowestOther = Math.min(lowestOther, before[j]);
+					}
+				}
+				if (progress[i] && queueCount > 1 && before[i] >= lowestOther) {
+					counts[i] = lowestOther - BOOST;
+					boosts[i]++;
+				}
+			}
+		}
+
+		for (int i = 0; i < queueCount; i++) {
+			System.out.println("queue " + heuristics.get(i).getName() + ": " + expansions[i] + " expansions, " + boosts[i] + " boosts, best value " + bestValues[i]);
+		}
+		System.out.println("multi-queue: " + closedList.size() + " expanded states, " + stale + " stale entries skipped");
+		printCacheStatistics(startState);
+		if (goal != null) {
+			System.out.println("plan cost: " + goal.getPathCost() + " turns");
+		}
+
+		return goal;
+	}
+
+	// helper method to put a state in every queue, returns for each queue if the state improves its best value
+	private boolean[] push(GameState state, List<Heuristic> heuristics, List<PriorityQueue<Entry>> queues, double[] bestValues) {
+		boolean[] improved = new boolean[queues.size()];
+
+		for (int i = 0; i < queues.size(); i++) {
+			// the heuristic of the first queue is already cached by the state
+			double value = (i == 0) ? state.getHeuristicValue() : heuristics.get(i).estimate(state);
+			queues.get(i).add(new Entry(state, value));
+
+			if (value < bestValues[i]) {
+				bestValues[i] = value;
+				improved[i] = true;
+			}
+		}
+
+		return improved;
+	}
+
+	@Override
+	public String getName() {
+		StringBuilder names = new StringBuilder();
+		for (Heuristic heuristic: extraHeuristics) {
+			names.append(", ").append(heuristic.getName());
+		}
+
+		return "multi-queue greedy (initial heuristic" + names + ", boost " + BOOST + ")";
+	}
+
+	/**
+	 * A state in one queue with the heuristic value of that queue. Ties are broken by the lower path cost.
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private final GameState state;
+		private final double value;
+
+		// constructor for a queue entry
+		private Entry(GameState state, double value) {
+			this.state = state;
+			this.value = value;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			int result = Double.compare(this.value, o.value);
+
+			return (result != 0) ? result : Double.compare(this.state.getPathCost(), o.state.getPathCost());
+		}
+	}
+}
@@ -6,11 +6,14 @@ import edu.cwru.sepia.action.ActionResult;
 import edu.cwru.sepia.agent.Agent;
 import edu.cwru.sepia.agent.planner.actions.*;
 import edu.cwru.sepia.environment.model.history.History;
+import edu.cwru.sepia.environment.model.state.ResourceNode;
 import edu.cwru.sepia.environment.model.state.ResourceType;
 import edu.cwru.sepia.environment.model.state.State;
 import edu.cwru.sepia.environment.model.state.Template;
 import edu.cwru.sepia.environment.model.state.Unit;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
@@ -37,6 +40,8 @@ public class PEAgent extends Agent {
     private State.StateView stateView;
     private int townhallId;
     private int peasantTemplateId;
+    // the file the plan was loaded from, null if the plan was given by PlannerAgent
+    private PlanFile planFile = null;
 
     public PEAgent(int playernum, Stack<StripsAction> plan) {
         super(playernum);
@@ -45,8 +50,43 @@ public class PEAgent extends Agent {
 
     }
 
+    /**
+     * Executes a plan saved by PlannerAgent in the binary PlanFile format, so an episode can run without planning.
+     * This is the constructor SEPIA calls when PEAgent is the agent class of a configuration.
+     *
+     * @param playernum The player number of the agent
+     * @param params The plan file, default saves/plan.bin
+     */
+    public PEAgent(int playernum, String[] params) {
+        this(playernum, (Stack<StripsAction>) null);
+
+        File file = new File((params != null && params.length > 0) ? params[0] : "saves/plan.bin");
+        try {
+            this.planFile = PlanFile.read(file);
+            this.plan = planFile.toPlan();
+            System.out.println("loaded plan of " + plan.size() + " actions from " + file);
+        } catch (IOException e) {
+            System.err.println("Cannot load plan " + file + ": " + e.getMessage());
+        }
+    }
+
     @Override
     public Map<Integer, Action> initialStep(State.StateView stateView, History.HistoryView historyView) {
+        // SEPIA keeps the agent for every episode, so a loaded plan starts over from the file
+        if (planFile != null) {
+            plan = planFile.toPlan();
+            numActors = 0;
+            currentAction = null;
+            queuedActors.clear();
+            peasantIdMap.clear();
+
+            // a loaded plan is only executed in the scenario it was planned for, if the file says which one that is
+            if (planFile.getSignature().length > 0 && !planFile.matches(PlanCache.signature(stateView, playernum))) {
+                System.err.println("The loaded plan was planned from another scenario, it is not executed");
+                plan = null;
+            }
+        }
+
         // gets the townhall ID and the peasant ID
         for(int unitId : stateView.getUnitIds(playernum)) {
             Unit.UnitView unit = stateView.getUnit(unitId);
@@ -107,6 +147,10 @@ public class PEAgent extends Agent {
         
         // get next action in plan if previous action is queued
         while (numActors == 0) {
+            // nothing is left to issue once the plan is used up, e.g. after a partial plan
+            if (plan == null || plan.isEmpty()) {
+                return actions;
+            }
             currentAction = plan.pop();
             queuedActors.clear();
             for (Integer unitID : stateView.getUnitIds(playernum)) {
@@ -135,6 +179,11 @@ public class PEAgent extends Agent {
             if (queuedActors.contains(unitID)) {
                 continue;
             }
+            
+            // skip peasants that cannot gather or deposit where they stand
+            if (!canExecute(currentAction, stateView.getUnit(unitID))) {
+                continue;
+            }
 
             // check if actor is idle and queue up action if true
             if ((!actionFeedback.containsKey(unitID) || actionFeedback.get(unitID).getFeedback() == ActionFeedback.COMPLETED) && !actions.containsKey(unitID)) {
@@ -150,8 +199,53 @@ public class PEAgent extends Agent {
             }
         }
         
+        // the plan step names fewer peasants than the quota, move on once every peasant is done
+        if (numActors > 0 && actions.isEmpty() && allIdle(actionFeedback)) {
+            numActors = 0;
+        }
+        
     	return actions;
     }
+    
+    /**
+     * A compound harvest or deposit only involves the peasants that stand next to a resource or the townhall with the
+     * right cargo, the other peasants are left idle.
+     *
+     * @param action The action that is being executed
+     * @param unit The unit that would execute it
+     * @return true if the unit can execute the action
+     */
+    private boolean canExecute(StripsAction action, Unit.UnitView unit) {
+        Position unitPos = new Position(unit.getXPosition(), unit.getYPosition());
+        
+        switch (action.getActionType()) {
+            case HARVEST:
+                if (unit.getCargoAmount() > 0) {
+                    return false;
+                }
+                for (Position neighbor : unitPos.getAdjacentPositions()) {
+                    if (stateView.resourceAt(neighbor.x, neighbor.y) != null) {
+                        return true;
+                    }
+                }
+                return false;
+            case DEPOSIT:
+                Unit.UnitView townhall = stateView.getUnit(townhallId);
+                return unit.getCargoAmount() > 0 && unitPos.isAdjacent(new Position(townhall.getXPosition(), townhall.getYPosition()));
+            default:
+                return true;
+        }
+    }
+    
+    // helper method to check if no unit is still executing an action from the last turn
+    private boolean allIdle(Map<Integer, ActionResult> actionFeedback) {
+        for (Integer unitID : stateView.getUnitIds(playernum)) {
+            if (actionFeedback.containsKey(unitID) && actionFeedback.get(unitID).getFeedback() != ActionFeedback.COMPLETED) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     /**
      * Returns a SEPIA version of the specified Strips Action.
@@ -186,7 +280,8 @@ public class PEAgent extends Agent {
                 sepiaAction = Action.createCompoundMove(action.getActorID(), targetPos.x, targetPos.y);
                 break;
             case HARVEST:
-            	sepiaAction = Action.createPrimitiveGather(action.getActorID(), (new Position(unit.getXPosition(), unit.getYPosition())).getDirection(action.getTargetPos()));
+            	Position unitPos = new Position(unit.getXPosition(), unit.getYPosition());
+            	sepiaAction = Action.createPrimitiveGather(action.getActorID(), unitPos.getDirection(getGatherPosition(unitPos, action.getTargetPos())));
                 break;
             case BUILD:
             	sepiaAction = Action.createPrimitiveProduction(action.getActorID(), action.getTargetID());
@@ -200,6 +295,32 @@ public class PEAgent extends Agent {
 
         return sepiaAction;
     }
+    
+    /**
+     * A harvest in the plan names one resource for all of its peasants, but a peasant may have ended its move next to
+     * another resource of the same type. In that case the peasant gathers from the resource it stands next to.
+     *
+     * @param unitPos Position of the gathering peasant
+     * @param targetPos Position of the resource named in the plan
+     * @return Position of the resource to gather from
+     */
+    private Position getGatherPosition(Position unitPos, Position targetPos) {
+        if (unitPos.isAdjacent(targetPos)) {
+            return targetPos;
+        }
+
+        Integer targetID = stateView.resourceAt(targetPos.x, targetPos.y);
+        ResourceNode.Type targetType = (targetID == null) ? null : stateView.getResourceNode(targetID).getType();
+
+        for (Position neighbor : unitPos.getAdjacentPositions()) {
+            Integer resourceID = stateView.resourceAt(neighbor.x, neighbor.y);
+            if (resourceID != null && (targetType == null || stateView.getResourceNode(resourceID).getType() == targetType)) {
+                return neighbor;
+            }
+        }
+
+        return targetPos;
+    }
 
     @Override
     public void terminalStep(State.StateView stateView, History.HistoryView historyView) {
@@ -0,0 +1,236 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash-distributed parallel A* (HDA*). Each worker thread owns the states whose fingerprint maps to it and keeps its
+ * own open list and table of the cheapest node per state, so no search structure is shared. A generated child is
+ * handled by its owner: children owned by the generating worker are queued directly, the others are sent to the
+ * owner's inbox, a lock-free multi-producer queue.
+ *
+ * Since the workers do not expand states in global f order, a goal is only a candidate (the incumbent) and states
+ * that are reached again with a cheaper path are expanded again. The search ends when no worker has a state with
+ * f below the cost of the incumbent and no state is in transit. This is detected with one counter holding the number
+ * of busy workers plus the number of sent but unprocessed states: a sender counts a state before it is sent, and a
+ * receiver counts itself busy before it uncounts the state it received, so the counter only reaches 0 when no work
+ * is left anywhere. With an admissible heuristic the plan is optimal, as in the sequential search.
+ *
+ * A worker that throws would leave the counter above 0 forever, so the first failure ends the search: it stops and
+ * wakes the other workers and the search reports that no plan was found.
+ */
+public class ParallelAstarSearch extends SearchEngine {
+	private static final long IDLE_WAIT_NANOS = 50000L;
+
+	private final int threads;
+
+	private List<ConcurrentLinkedQueue<GameState>> inboxes;
+	private final AtomicLong pending = new AtomicLong();
+	private volatile boolean done;
+	private Thread[] workerThreads;
+	// first error thrown by a worker, null while every worker runs normally
+	private volatile Throwable failure;
+
+	private GameState incumbent;
+	private volatile double incumbentCost;
+
+	/**
+	 * @param threads Number of worker threads
+	 */
+	public ParallelAstarSearch(int threads) {
+		this.threads = Math.max(threads, 1);
+	}
+
+	@Override
+	public GameState search(GameState startState) {
+		this.inboxes = new ArrayList<ConcurrentLinkedQueue<GameState>>(threads);
+		for (int i = 0; i < threads; i++) {
+			inboxes.add(new ConcurrentLinkedQueue<GameState>());
+		}
+		this.incumbent = null;
+		this.incumbentCost = Double.POSITIVE_INFINITY;
+		this.done = false;
+		this.failure = null;
+
+		// the initial state is the first message
+		pending.set(1);
+		inboxes.get(this.ownerOf(startState)).add(startState);
+
+		Worker[] workers = new Worker[threads];
+		this.workerThreads = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(i);
+			workerThreads[i] = new Thread(workers[i], "hda-worker-" + i);
+			workerThreads[i].start();
+		}
+
+		for (Thread thread: workerThreads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				this.cancel();
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		long expansions = 0;
+		long peak = 0;
+		for (Worker worker: workers) {
+			expansions += worker.expansions;
+			peak += worker.openList.getPeakSize();
+			System.out.println("hda worker " + worker.id + ": " + worker.expansions + " expansions, " + worker.received + " states received, " + worker.sent + " sent");
+		}
+		System.out.println("hda: " + threads + " threads, " + expansions + " expansions, peak open states " + peak);
+		printCacheStatistics(startState);
+		if (failure != null) {
+			System.err.println("hda: a worker failed, no plan: " + failure);
+			return null;
+		}
+		if (incumbent != null) {
+			System.out.println("plan cost: " + incumbent.getPathCost() + " turns, " + incumbent.getEvaluator());
+		}
+
+		return incumbent;
+	}
+
+	// helper method to record a goal that is cheaper than the incumbent
+	private synchronized void offerGoal(GameState goal) {
+		if (goal.getPathCost() < incumbentCost) {
+			this.incumbent = goal;
+			this.incumbentCost = goal.getPathCost();
+		}
+	}
+
+	// helper method to end the search after a worker failed and wake the workers that wait for work
+	private synchronized void fail(Throwable error) {
+		if (failure == null) {
+			failure = error;
+		}
+		done = true;
+		this.cancel();
+
+		for (Thread thread: workerThreads) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	// helper method to get the worker that owns a state
+	private int ownerOf(GameState state) {
+		return (int) Long.remainderUnsigned(state.getFingerprint(), threads);
+	}
+
+	@Override
+	public String getName() {
+		return "hda (" + threads + " threads)";
+	}
+
+	/**
+	 * Search loop of one worker thread.
+	 */
+	private class Worker implements Runnable {
+		private final int id;
+		private final IndexedOpenList openList = new IndexedOpenList();
+		// the cheapest node found for every owned state
+		private final HashMap<GameState, GameState> cheapest = new HashMap<GameState, GameState>();
+
+		private boolean busy = false;
+		private long expansions = 0;
+		private long received = 0;
+		private long sent = 0;
+
+		// constructor for the worker that owns partition id
+		private Worker(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public void run() {
+			try {
+				this.work();
+			} catch (Throwable e) {
+				// the heuristic can throw and a large map can run out of memory
+				fail(e);
+			}
+		}
+
+		// helper method to process messages and expand states until the search is done
+		private void work() {
+			ConcurrentLinkedQueue<GameState> inbox = inboxes.get(id);
+
+			while (!done && !isCancelled()) {
+				GameState message;
+				while ((message = inbox.poll()) != null) {
+					// count this worker as busy before the message is uncounted, so the total never drops to 0 early
+					if (!busy) {
+						busy = true;
+						pending.incrementAndGet();
+					}
+					this.receive(message);
+					received++;
+					pending.decrementAndGet();
+				}
+
+				if (!openList.isEmpty() && openList.peek().getPriority() < incumbentCost) {
+					this.expand(openList.poll());
+				}
+				else {
+					if (busy) {
+						busy = false;
+						pending.decrementAndGet();
+					}
+					if (pending.get() == 0) {
+						done = true;
+					}
+					else {
+						LockSupport.parkNanos(IDLE_WAIT_NANOS);
+					}
+				}
+			}
+		}
+
+		// helper method to queue an owned state unless it was already reached with a path that is not more expensive
+		private void receive(GameState state) {
+			GameState previous = cheapest.get(state);
+
+			if (previous == null || state.getPathCost() < previous.getPathCost()) {
+				cheapest.put(state, state);
+				openList.add(state);
+			}
+		}
+
+		// helper method to expand a state and hand its children to their owners
+		private void expand(GameState current) {
+			// skip nodes that were replaced by a cheaper node after they were queued
+			if (cheapest.get(current) != current) {
+				return;
+			}
+
+			if (current.isGoal()) {
+				offerGoal(current);
+				return;
+			}
+
+			List<GameState> successorList = current.generateChildren();
+			current.compact();
+			expansions++;
+
+			for (GameState successor: successorList) {
+				int owner = ownerOf(successor);
+
+				if (owner == id) {
+					this.receive(successor);
+				}
+				else {
+					// count the state before it becomes visible to the owner
+					pending.incrementAndGet();
+					inboxes.get(owner).add(successor);
+					sent++;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+import edu.cwru.sepia.environment.model.state.ResourceNode;
+import edu.cwru.sepia.environment.model.state.ResourceType;
+import edu.cwru.sepia.environment.model.state.State;
+import edu.cwru.sepia.environment.model.state.Unit;
+
+/**
+ * Plans of earlier episodes, so an episode that starts from the same scenario does not search again. The key is the
+ * fingerprint of the initial GameState together with the required gold, the required wood and whether peasants may be
+ * built. There are two layers: an LRU map of the last CAPACITY plans that lives as long as the JVM, which covers the
+ * episodes of one run, and one file per key in the saves directory, which covers later runs.
+ *
+ * The fingerprint leaves out the unit ids and two scenarios could share it, so every entry also holds a signature of
+ * the StateView it was planned from: the map size, the stock of the player, every unit of the player with its id,
+ * position and cargo, and every resource with its id, position and amount. A cached plan is only used when the
+ * signature of the current StateView is the same.
+ *
+ * Both layers keep a plan as a PlanFile with the signature in it, the files are written in the binary PlanFile format.
+ * Every lookup builds new StripsActions since PEAgent changes the actor ids of the actions it executes.
+ */
+public final class PlanCache {
+	public static final int CAPACITY = 8;
+
+	private static final Map<Long, PlanFile> memory = new LinkedHashMap<Long, PlanFile>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, PlanFile> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+
+	private final File directory;
+
+	/**
+	 * @param directory Directory of the plan files, usually saves
+	 */
+	public PlanCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @param initialState The initial state of the search
+	 * @return the key of the plans that solve the problem of the state
+	 */
+	public static long key(GameState initialState) {
+		StaticWorld world = initialState.getWorld();
+		long key = initialState.getFingerprint();
+
+		key = 31 * key + world.getRequiredGold();
+		key = 31 * key + world.getRequiredWood();
+		key = 31 * key + (world.getBuildPeasants() ? 1 : 0);
+
+		return key;
+	}
+
+	/**
+	 * Describes the part of a stateview that a plan depends on. Units and resources are sorted by id.
+	 *
+	 * @param state The current stateview
+	 * @param playernum The player number of agent that is planning
+	 * @return the signature of the stateview
+	 */
+	public static int[] signature(State.StateView state, int playernum) {
+		List<Integer> signature = new ArrayList<Integer>();
+		signature.add(state.getXExtent());
+		signature.add(state.getYExtent());
+		signature.add(state.getResourceAmount(playernum, ResourceType.GOLD));
+		signature.add(state.getResourceAmount(playernum, ResourceType.WOOD));
+
+		List<Integer> unitIds = new ArrayList<Integer>(state.getUnitIds(playernum));
+		Collections.sort(unitIds);
+		signature.add(unitIds.size());
+		for (Integer id: unitIds) {
+			Unit.UnitView unit = state.getUnit(id);
+			signature.add(id);
+			signature.add(unit.getTemplateView().getID());
+			signature.add(unit.getXPosition());
+			signature.add(unit.getYPosition());
+			signature.add((unit.getCargoType() == null) ? -1 : unit.getCargoType().ordinal());
+			signature.add(unit.getCargoAmount());
+		}
+
+		List<Integer> resourceIds = new ArrayList<Integer>(state.getAllResourceIds());
+		Collections.sort(resourceIds);
+		signature.add(resourceIds.size());
+		for (Integer id: resourceIds) {
+			ResourceNode.ResourceView resource = state.getResourceNode(id);
+			signature.add(id);
+			signature.add(resource.getType().ordinal());
+			signature.add(resource.getXPosition());
+			signature.add(resource.getYPosition());
+			signature.add(resource.getAmountRemaining());
+		}
+
+		int[] result = new int[signature.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = signature.get(i);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Looks up a plan in memory and then on disk.
+	 *
+	 * @param key Key of the problem, see key
+	 * @param signature Signature of the current stateview, see signature
+	 * @return a new copy of the cached plan, null if there is none or it was planned from another scenario
+	 */
+	public Stack<StripsAction> get(long key, int[] signature) {
+		PlanFile entry;
+		synchronized (memory) {
+			entry = memory.get(key);
+		}
+		String layer = "memory";
+
+		if (entry == null) {
+			entry = this.read(key);
+			layer = "disk";
+		}
+		if (entry == null) {
+			System.out.println("plan cache: miss " + Long.toHexString(key));
+			return null;
+		}
+		if (!entry.matches(signature)) {
+			System.out.println("plan cache: " + layer + " entry of " + Long.toHexString(key) + " was planned from another scenario");
+			return null;
+		}
+
+		synchronized (memory) {
+			memory.put(key, entry);
+		}
+		System.out.println("plan cache: " + layer + " hit " + Long.toHexString(key) + ", " + entry.size() + " actions");
+
+		return entry.toPlan();
+	}
+
+	/**
+	 * Keeps a plan in memory and writes it to disk. The plan itself is not changed.
+	 *
+	 * @param key Key of the problem, see key
+	 * @param signature Signature of the stateview the plan starts from, see signature
+	 * @param plan The plan, the next action on top
+	 */
+	public void put(long key, int[] signature, Stack<StripsAction> plan) {
+		PlanFile entry = new PlanFile(plan, signature);
+
+		synchronized (memory) {
+			memory.put(key, entry);
+		}
+
+		try {
+			entry.write(this.fileOf(key));
+		} catch (IOException e) {
+			System.err.println("Cannot write plan cache file: " + e.getMessage());
+		}
+	}
+
+	// helper method to get the file of a key
+	private File fileOf(long key) {
+		return new File(directory, "plan-" + Long.toHexString(key) + ".bin");
+	}
+
+	// helper method to read the entry of a key from disk, null if there is no readable file
+	private PlanFile read(long key) {
+		File file = this.fileOf(key);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		try {
+			return PlanFile.read(file);
+		} catch (IOException e) {
+			System.err.println("Cannot read plan cache file " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	// empties the memory layer, the files on disk are kept
+	public static void clearMemory() {
+		synchronized (memory) {
+			memory.clear();
+		}
+	}
+}
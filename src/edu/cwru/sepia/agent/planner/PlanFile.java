@@ -0,0 +1,224 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Stack;
+
+import edu.cwru.sepia.agent.planner.actions.Build_k;
+import edu.cwru.sepia.agent.planner.actions.Deposit_k;
+import edu.cwru.sepia.agent.planner.actions.Harvest_k;
+import edu.cwru.sepia.agent.planner.actions.Move_k;
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+import edu.cwru.sepia.agent.planner.actions.StripsAction.StripsActionType;
+
+/**
+ * Binary form of a plan, so a plan can be executed by PEAgent without planning again. Every action keeps the fields
+ * PEAgent reads: the action type, the actor, the target id and the target position. A missing actor, target id or
+ * target position is stored as -1.
+ *
+ * File layout, big endian: magic, version, the length of the signature and its ints (0 when the plan has none, see
+ * PlanCache.signature), the number of actions, then per action the type ordinal as a byte and the actor, target id,
+ * target x and target y as ints. The actions are stored from the bottom of the stack to the top, so the first action
+ * to execute comes last.
+ *
+ * A PlanFile does not change after it is created. toPlan builds new StripsActions every time since PEAgent changes
+ * the actor ids of the actions it executes.
+ */
+public final class PlanFile {
+	public static final int MAGIC = 0x53504c4e;
+	public static final int VERSION = 1;
+
+	private static final StripsActionType[] TYPES = StripsActionType.values();
+
+	private final int[] signature;
+	private final byte[] actionTypes;
+	private final int[] actorIDs;
+	private final int[] targetIDs;
+	private final int[] targetX;
+	private final int[] targetY;
+
+	/**
+	 * @param plan The plan, the next action on top
+	 * @param signature Signature of the stateview the plan starts from, or an empty array
+	 */
+	public PlanFile(Stack<StripsAction> plan, int[] signature) {
+		this(signature, plan.size());
+
+		for (int i = 0; i < plan.size(); i++) {
+			StripsAction action = plan.get(i);
+			actionTypes[i] = (byte) action.getActionType().ordinal();
+			actorIDs[i] = (action.getActorID() == null) ? -1 : action.getActorID();
+			targetIDs[i] = (action.getTargetID() == null) ? -1 : action.getTargetID();
+			targetX[i] = (action.getTargetPos() == null) ? -1 : action.getTargetPos().x;
+			targetY[i] = (action.getTargetPos() == null) ? -1 : action.getTargetPos().y;
+		}
+	}
+
+	// constructor for an empty plan of the given size, filled by the other constructor or by read
+	private PlanFile(int[] signature, int size) {
+		this.signature = signature.clone();
+		this.actionTypes = new byte[size];
+		this.actorIDs = new int[size];
+		this.targetIDs = new int[size];
+		this.targetX = new int[size];
+		this.targetY = new int[size];
+	}
+
+	/**
+	 * Reads a plan written by write.
+	 *
+	 * @param file The plan file
+	 * @return the plan of the file
+	 * @throws IOException if the file cannot be read or is not a plan file of this version
+	 */
+	public static PlanFile read(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (input.readInt() != MAGIC) {
+				throw new IOException(file + " is not a plan file");
+			}
+			int version = input.readInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has plan file version " + version + ", expected " + VERSION);
+			}
+
+			int signatureLength = input.readInt();
+			if (signatureLength < 0) {
+				throw new IOException(file + " has a negative signature length");
+			}
+			int[] signature = new int[signatureLength];
+			for (int i = 0; i < signature.length; i++) {
+				signature[i] = input.readInt();
+			}
+
+			int size = input.readInt();
+			if (size < 0) {
+				throw new IOException(file + " has a negative number of actions");
+			}
+			PlanFile planFile = new PlanFile(signature, size);
+			for (int i = 0; i < planFile.size(); i++) {
+				int type = input.readByte();
+				if (type < 0 || type >= TYPES.length) {
+					throw new IOException(file + " has an unknown action type " + type);
+				}
+				planFile.actionTypes[i] = (byte) type;
+				planFile.actorIDs[i] = input.readInt();
+				planFile.targetIDs[i] = input.readInt();
+				planFile.targetX[i] = input.readInt();
+				planFile.targetY[i] = input.readInt();
+			}
+
+			return planFile;
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Reads the plan of a file.
+	 *
+	 * @param file The plan file
+	 * @return a new plan with the next action on top
+	 * @throws IOException if the file cannot be read or is not a plan file of this version
+	 */
+	public static Stack<StripsAction> load(File file) throws IOException {
+		return read(file).toPlan();
+	}
+
+	/**
+	 * Writes the plan, through a temporary file in the same directory so a reader never sees half a file.
+	 *
+	 * @param file The plan file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		directory.mkdirs();
+		File temporary = File.createTempFile("plan", ".tmp", directory);
+
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(signature.length);
+			for (int value: signature) {
+				output.writeInt(value);
+			}
+
+			output.writeInt(this.size());
+			for (int i = 0; i < this.size(); i++) {
+				output.writeByte(actionTypes[i]);
+				output.writeInt(actorIDs[i]);
+				output.writeInt(targetIDs[i]);
+				output.writeInt(targetX[i]);
+				output.writeInt(targetY[i]);
+			}
+		} finally {
+			output.close();
+		}
+
+		file.delete();
+		if (!temporary.renameTo(file)) {
+			temporary.delete();
+			throw new IOException("Cannot rename " + temporary + " to " + file);
+		}
+	}
+
+	/**
+	 * @return a new plan with the actions of the file, the next action on top
+	 */
+	public Stack<StripsAction> toPlan() {
+		Stack<StripsAction> plan = new Stack<StripsAction>();
+
+		for (int i = 0; i < this.size(); i++) {
+			StripsActionType type = TYPES[actionTypes[i]];
+			StripsAction action;
+			switch (type) {
+				case MOVE:
+					action = new Move_k(type);
+					break;
+				case HARVEST:
+					action = new Harvest_k(type);
+					break;
+				case BUILD:
+					action = new Build_k(type);
+					break;
+				default:
+					action = new Deposit_k(type);
+					break;
+			}
+
+			action.setActorID((actorIDs[i] == -1) ? null : actorIDs[i]);
+			action.setTargetID((targetIDs[i] == -1) ? null : targetIDs[i]);
+			action.setTargetPos((targetX[i] == -1 && targetY[i] == -1) ? null : new Position(targetX[i], targetY[i]));
+			plan.push(action);
+		}
+
+		return plan;
+	}
+
+	/**
+	 * @param signature Signature of the current stateview
+	 * @return true if the plan starts from a stateview with the same signature
+	 */
+	public boolean matches(int[] signature) {
+		return Arrays.equals(this.signature, signature);
+	}
+
+	// get signature of the stateview the plan starts from, empty if the plan has none
+	public int[] getSignature() {
+		return this.signature.clone();
+	}
+
+	// get number of actions
+	public int size() {
+		return this.actionTypes.length;
+	}
+}
@@ -18,6 +18,9 @@ public class PlannerAgent extends Agent {
     final int requiredWood;
     final int requiredGold;
     final boolean buildPeasants;
+    
+    // optional key=value settings given after the required arguments
+    final PlannerOptions options;
 
     // Your PEAgent implementation. This prevents you from having to parse the text file representation of your plan.
     PEAgent peAgent;
@@ -32,15 +35,61 @@ public class PlannerAgent extends Agent {
         requiredWood = Integer.parseInt(params[0]);
         requiredGold = Integer.parseInt(params[1]);
         buildPeasants = Boolean.parseBoolean(params[2]);
+        options = new PlannerOptions(params, 3);
+
+        // the engines that search on other threads cannot be held to a budget
+        String search = options.getString("search", "astar");
+        if ((search.equals("hda") || search.equals("portfolio"))
+                && (options.getLong("maxExpansions", 0L) > 0 || options.getLong("maxHeapMb", 0L) > 0 || options.getLong("maxTime", 0L) > 0)) {
+            String message = "search=" + search + " does not support maxExpansions, maxHeapMb or maxTime";
+            System.err.println(message);
+            throw new IllegalArgumentException(message);
+        }
 
+        // ARA* only ends without a time limit once the weight has come down to 1
+        if (search.equals("ara") && !(options.getDouble("weightStep", 1.) > 0.)) {
+            String message = "search=ara needs a positive weightStep, got " + options.getDouble("weightStep", 1.);
+            System.err.println(message);
+            throw new IllegalArgumentException(message);
+        }
 
-        System.out.println("required wood: " + requiredWood + " required gold: " + requiredGold + " build Peasants: " + buildPeasants);
+        System.out.println("required wood: " + requiredWood + " required gold: " + requiredGold + " build Peasants: " + buildPeasants + " options: " + options);
     }
 
     @Override
     public Map<Integer, Action> initialStep(State.StateView stateView, History.HistoryView historyView) {
 
-        Stack<StripsAction> plan = AstarSearch(new GameState(stateView, playernum, requiredGold, requiredWood, buildPeasants));
+        // the walking distances of the map are kept in saves for the next episodes and runs
+        File saves = new File("saves");
+        StaticWorld world = new StaticWorld(stateView, playernum, requiredGold, requiredWood, buildPeasants, saves);
+        DistanceTable distanceTable = world.getDistanceTable();
+        System.out.println("distance table: " + distanceTable.getKeyLocationCount() + " key locations, " + (distanceTable.isLoaded() ? "read from " + saves : "computed"));
+
+        GameState initialState = new GameState(world);
+        Stack<StripsAction> plan = null;
+
+        // an episode that starts from a scenario that was solved before reuses its plan
+        PlanCache cache = options.getBoolean("cache", true) ? new PlanCache(saves) : null;
+        long key = PlanCache.key(initialState);
+        int[] signature = PlanCache.signature(stateView, playernum);
+        if (cache != null) {
+            plan = cache.get(key, signature);
+        }
+
+        if (plan == null) {
+            SearchEngine engine = createEngine();
+            engine.setBudget(new SearchBudget(options.getLong("maxExpansions", 0L), options.getLong("maxHeapMb", 0L) << 20, options.getLong("maxTime", 0L)));
+            System.out.println("search engine: " + engine.getName());
+
+            long start = System.currentTimeMillis();
+            plan = engine.plan(initialState);
+            System.out.println("search time: " + (System.currentTimeMillis() - start) + " ms");
+
+            // a plan prefix of a search that was cut off is not worth keeping
+            if (cache != null && plan != null && engine.getBudget().getReason() == SearchBudget.CutoffReason.NONE) {
+                cache.put(key, signature, plan);
+            }
+        }
 
         if(plan == null) {
             System.err.println("No plan was found");
@@ -49,7 +98,7 @@ public class PlannerAgent extends Agent {
         }
 
         // write the plan to a text file
-        savePlan(plan);
+        savePlan(plan, signature);
 
 
         // Instantiates the PEAgent with the specified plan.
@@ -84,62 +133,93 @@ public class PlannerAgent extends Agent {
     }
 
     /**
-     * Modified A* Search code
-     * Perform an A* search of the game graph. This should return your plan as a stack of actions. This is essentially
-     * the same as your first assignment. The implementations should be very similar. The difference being that your
-     * nodes are now GameState objects not Position objects.
+     * Creates the search engine selected with the search argument. Every engine is limited by the settings
+     * maxExpansions, maxHeapMb and maxTime (milliseconds), 0 or missing for no limit. The hda and portfolio engines
+     * run their searches on other threads, so the constructor rejects these limits for them. The search is skipped
+     * when the plan cache holds a plan for the same scenario, set cache=false to always search (see PlanCache).
+     *
+     *   search=astar   A* search (default), setting lazy (true to compute the heuristic of a state when it is expanded
+     *                  instead of when it is generated, default false)
+     *   search=ara     Anytime Repairing A*, settings weight (initial heuristic weight, default 5), weightStep (default
+     *                  1, must be positive) and timeLimit (wall clock budget in milliseconds, default 0 for no limit)
+     *   search=ida     IDA* in linear memory, setting tableSize (slots of the transposition table, default 2^20)
+     *   search=beam    beam search, settings beamWidth (states kept per layer, default 100) and maxDepth (layers,
+     *                  default 1000)
+     *   search=hda     hash-distributed parallel A*, setting threads (worker threads, default the number of processors)
+     *   search=mq      greedy search with one queue for the heuristic of the initial state and one for the resource
+     *                  deficit (GameState.getCost), taking turns with boosting
+     *   search=ehc     enforced hill-climbing over helpful actions with an astar fallback
+     *   search=portfolio  races the configurations listed in portfolio (default greedy,wastar,astar) on separate
+     *                  threads and takes the first plan, see createPortfolio
+     *
+     * @return The engine that plans from the initial state
+     */
+    private SearchEngine createEngine() {
+        String search = options.getString("search", "astar");
+
+        if (search.equals("ara")) {
+            return new AnytimeSearch(options.getDouble("weight", 5.), options.getDouble("weightStep", 1.), options.getLong("timeLimit", 0L));
+        }
+        if (search.equals("ida")) {
+            return new IdaStarEngine(options.getInt("tableSize", TranspositionTable.DEFAULT_CAPACITY));
+        }
+        if (search.equals("beam")) {
+            return new BeamSearch(options.getInt("beamWidth", 100), options.getInt("maxDepth", 1000));
+        }
+        if (search.equals("hda")) {
+            return new ParallelAstarSearch(options.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        }
+        if (search.equals("mq")) {
+            return new MultiQueueSearch(Collections.<Heuristic>singletonList(new DeficitHeuristic()));
+        }
+        if (search.equals("ehc")) {
+            return new EnforcedHillClimbing();
+        }
+        if (search.equals("portfolio")) {
+            return createPortfolio(options.getString("portfolio", "greedy,wastar,astar"));
+        }
+        if (!search.equals("astar")) {
+            System.err.println("Unknown search " + search + ", using astar");
+        }
+
+        return new AstarEngine(options.getBoolean("lazy", false));
+    }
+
+    /**
+     * Creates a portfolio from a comma separated list of configurations:
+     *
+     *   astar    A* (f = g + h)
+     *   wastar   weighted A*, setting weight (default 5)
+     *   greedy   greedy best-first search (f = h)
+     *   beam     beam search, settings beamWidth (default 100) and maxDepth (default 1000)
      *
-     * @param startState The state which is being planned from
-     * @return The plan or null if no plan is found.
+     * @param names The configurations that race each other
+     * @return The portfolio engine
      */
-    private Stack<StripsAction> AstarSearch(GameState startState) {
-      // TODO: Implement me!
-    	Stack<StripsAction> finalPlan = new Stack<>();
-    	PriorityQueue<GameState> openList = new PriorityQueue<GameState>();
-        ArrayList<GameState> closedList = new ArrayList<GameState>();
-
-        // start with startState game state
-        openList.add(startState);
-
-        // performs A* Search when openList is not empty
-        while (!openList.isEmpty()) {
-        	GameState current = openList.poll();
-        	
-            // plan is found when goal is reached
-            if (current.isGoal()) {
-                // Go to each node's parent and add it to the stack of moves
-                while(current.getParent() != null){
-                    finalPlan.push(current.getAction());
-                    current = current.getParent().getParent();
-                }
-                return finalPlan;
-            	
-            } else {
-                // goal is not reached so continue to find next successors
-                // put the current node to the closed list
-                closedList.add(current);
-
-                // get a list of successors of the current node
-                List<GameState> successorList = current.generateChildren();   
-                
-                if (successorList != null) {
-	                // add all the successors to the open list
-	                while (!successorList.isEmpty()) {
-	                    // obtain the first successor game state from the list of successors
-	                	GameState successor = successorList.remove(0);
-	
-	                    // check if successor is part of the closed list. If not, add it to open list
-	                    if (closedList.contains(successor)) {
-	                        continue;
-	                    } else {
-	                        openList.add(successor);
-	                    }
-	                }
-                }
+    private SearchEngine createPortfolio(String names) {
+        PortfolioPlanner portfolio = new PortfolioPlanner();
+
+        for (String name: names.split(",")) {
+            name = name.trim();
+
+            if (name.equals("astar")) {
+                portfolio.addRacer(name, new AstarEngine(), 1., 1.);
+            }
+            else if (name.equals("wastar")) {
+                portfolio.addRacer(name, new AstarEngine(), 1., options.getDouble("weight", 5.));
+            }
+            else if (name.equals("greedy")) {
+                portfolio.addRacer(name, new AstarEngine(), 0., 1.);
+            }
+            else if (name.equals("beam")) {
+                portfolio.addRacer(name, new BeamSearch(options.getInt("beamWidth", 100), options.getInt("maxDepth", 1000)), 1., 1.);
+            }
+            else {
+                System.err.println("Unknown portfolio configuration " + name + ", skipping it");
             }
         }
-        
-    	return finalPlan;
+
+        return portfolio;
     }
     
     /**
@@ -149,9 +229,12 @@ public class PlannerAgent extends Agent {
      * move action might have the form of Move(peasantID, X, Y) and when grounded and written to the file
      * Move(1, 10, 15).
      *
+     * The plan is also written to plan.bin in the PlanFile format, which PEAgent(playernum, params) reads back.
+     *
      * @param plan Stack of Strips Actions that are written to the text file.
+     * @param signature Signature of the stateview the plan starts from, see PlanCache.signature
      */
-    private void savePlan(Stack<StripsAction> plan) {
+    private void savePlan(Stack<StripsAction> plan, int[] signature) {
         if (plan == null) {
             System.err.println("Cannot save null plan");
             return;
@@ -170,9 +253,7 @@ public class PlannerAgent extends Agent {
 
             Stack<StripsAction> tempPlan = (Stack<StripsAction>) plan.clone();
             while(!tempPlan.isEmpty()) {
-                System.out.println(tempPlan.peek().toString());
                 outputWriter.println(tempPlan.pop().toString());
-                System.out.println(tempPlan.isEmpty());
             }
         } catch (FileNotFoundException e) {
             e.printStackTrace();
@@ -182,5 +263,12 @@ public class PlannerAgent extends Agent {
             if (outputWriter != null)
                 outputWriter.close();
         }
+
+        // the binary copy can be executed by PEAgent without planning again
+        try {
+            new PlanFile(plan, signature).write(new File(outputDir, "plan.bin"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optional settings of the PlannerAgent. They are given as key=value arguments after the three required arguments
+ * of the agent in the config XML, for example
+ *
+ *   <Argument>2000</Argument>
+ *   <Argument>3000</Argument>
+ *   <Argument>true</Argument>
+ *   <Argument>search=ara</Argument>
+ *   <Argument>timeLimit=5000</Argument>
+ *   <Argument>weight=5</Argument>
+ *
+ * Unknown keys are kept so every engine can read its own settings, malformed arguments are reported and ignored.
+ */
+public class PlannerOptions {
+	private final Map<String, String> values = new HashMap<String, String>();
+
+	/**
+	 * @param params The arguments of the agent
+	 * @param first Index of the first optional argument
+	 */
+	public PlannerOptions(String[] params, int first) {
+		for (int i = first; i < params.length; i++) {
+			String param = params[i].trim();
+			int split = param.indexOf('=');
+
+			if (split <= 0) {
+				System.err.println("Ignoring planner argument " + param + ", expected key=value");
+				continue;
+			}
+
+			values.put(param.substring(0, split).trim(), param.substring(split + 1).trim());
+		}
+	}
+
+	// get a setting as a string
+	public String getString(String key, String defaultValue) {
+		String value = values.get(key);
+
+		return (value == null) ? defaultValue : value;
+	}
+
+	// get a setting as an int
+	public int getInt(String key, int defaultValue) {
+		return (int) this.getLong(key, defaultValue);
+	}
+
+	// get a setting as a long
+	public long getLong(String key, long defaultValue) {
+		String value = values.get(key);
+
+		try {
+			return (value == null) ? defaultValue : Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			System.err.println("Ignoring planner argument " + key + "=" + value + ", expected a whole number");
+			return defaultValue;
+		}
+	}
+
+	// get a setting as a double
+	public double getDouble(String key, double defaultValue) {
+		String value = values.get(key);
+
+		try {
+			return (value == null) ? defaultValue : Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			System.err.println("Ignoring planner argument " + key + "=" + value + ", expected a number");
+			return defaultValue;
+		}
+	}
+
+	// get a setting as a boolean
+	public boolean getBoolean(String key, boolean defaultValue) {
+		String value = values.get(key);
+
+		return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+	/**
+	 * @return the settings that were given
+	 */
+	@Override
+	public String toString() {
+		return values.toString();
+	}
+}
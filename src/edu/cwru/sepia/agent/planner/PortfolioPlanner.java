@@ -0,0 +1,161 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Races several planner configurations against each other. Every configuration (a racer) is a search engine with its
+ * own weights for g and h and runs on its own thread from its own initial state; all initial states share the
+ * StaticWorld of the problem, so the map is read only once. The first racer that finds a plan wins and the others
+ * are cancelled through SearchEngine.cancel(), which they check between expansions.
+ *
+ * The winner is logged so the portfolio can be tuned for each map.
+ */
+public class PortfolioPlanner extends SearchEngine {
+	private final List<Racer> racers = new ArrayList<Racer>();
+
+	private Racer winner;
+	private GameState winningGoal;
+
+	/**
+	 * Adds a configuration to the portfolio.
+	 *
+	 * @param name Name of the configuration used in the logs
+	 * @param engine The engine that searches for the configuration
+	 * @param gWeight Weight of the path cost
+	 * @param hWeight Weight of the heuristic
+	 */
+	public void addRacer(String name, SearchEngine engine, double gWeight, double hWeight) {
+		racers.add(new Racer(name, engine, gWeight, hWeight));
+	}
+
+	@Override
+	public GameState search(GameState startState) {
+		this.winner = null;
+		this.winningGoal = null;
+		long start = System.currentTimeMillis();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (Racer racer: racers) {
+			// each racer gets its own initial state and heuristic, only the static part of the problem is shared
+			GameState racerStart = new GameState(startState.getWorld());
+			racerStart.setEvaluator(new Evaluator(racer.gWeight, racer.hWeight, racerStart.getEvaluator().getHeuristic()));
+
+			Thread thread = new Thread(new RacerTask(racer, racerStart), "portfolio-" + racer.name);
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread: threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				this.cancel();
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		for (Racer racer: racers) {
+			System.out.println("portfolio " + racer.name + ": " + racer.result + " after " + racer.time + " ms");
+		}
+		if (winner == null) {
+			System.out.println("portfolio: no configuration found a plan");
+		}
+		else {
+			System.out.println("portfolio winner: " + winner.name + " (" + winner.engine.getName() + "), plan cost " + winningGoal.getPathCost() + " turns, " + (System.currentTimeMillis() - start) + " ms");
+		}
+
+		return winningGoal;
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		for (Racer racer: racers) {
+			racer.engine.cancel();
+		}
+	}
+
+	// helper method to take the plan of the first racer that finishes and cancel the others
+	private synchronized void finish(Racer racer, GameState goal) {
+		if (goal == null || !goal.isGoal()) {
+			racer.result = racer.engine.isCancelled() ? "cancelled" : "no plan";
+			return;
+		}
+		if (winner != null) {
+			racer.result = "plan cost " + goal.getPathCost() + " turns, too late";
+			return;
+		}
+
+		this.winner = racer;
+		this.winningGoal = goal;
+		racer.result = "plan cost " + goal.getPathCost() + " turns, won";
+
+		for (Racer other: racers) {
+			if (other != racer) {
+				other.engine.cancel();
+			}
+		}
+	}
+
+	@Override
+	public String getName() {
+		StringBuilder names = new StringBuilder();
+		for (Racer racer: racers) {
+			names.append((names.length() == 0) ? "" : ", ").append(racer.name);
+		}
+
+		return "portfolio (" + names + ")";
+	}
+
+	/**
+	 * One configuration of the portfolio and the outcome of its search.
+	 */
+	private static class Racer {
+		private final String name;
+		private final SearchEngine engine;
+		private final double gWeight;
+		private final double hWeight;
+
+		// written by the racer thread and read after it was joined
+		private String result = "not run";
+		private long time;
+
+		// constructor for a configuration of the portfolio
+		private Racer(String name, SearchEngine engine, double gWeight, double hWeight) {
+			this.name = name;
+			this.engine = engine;
+			this.gWeight = gWeight;
+			this.hWeight = hWeight;
+		}
+	}
+
+	/**
+	 * Runs the search of one racer on its thread.
+	 */
+	private class RacerTask implements Runnable {
+		private final Racer racer;
+		private final GameState startState;
+
+		// constructor for the task that searches from the racer's own initial state
+		private RacerTask(Racer racer, GameState startState) {
+			this.racer = racer;
+			this.startState = startState;
+		}
+
+		@Override
+		public void run() {
+			long start = System.currentTimeMillis();
+			GameState goal = null;
+
+			try {
+				goal = racer.engine.search(startState);
+			} catch (RuntimeException e) {
+				System.err.println("portfolio " + racer.name + " failed: " + e);
+			}
+
+			racer.time = System.currentTimeMillis() - start;
+			finish(racer, goal);
+		}
+	}
+}
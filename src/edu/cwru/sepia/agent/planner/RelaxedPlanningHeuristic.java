@@ -0,0 +1,613 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+import edu.cwru.sepia.agent.planner.actions.StripsAction.StripsActionType;
+import edu.cwru.sepia.environment.model.state.ResourceType;
+
+/**
+ * Delete relaxation heuristic (h_add or h_FF) over the grounded Move_k, Harvest_k and Deposit_k actions, with the
+ * Build_k trade-off evaluated on top of it.
+ *
+ * The facts are at(p, l) for every peasant slot p and location l (the townhall and every resource), carries(p, t) for
+ * every cargo type t and delivered(t). The actions are grounded once per map into flat arrays:
+ *   move(p, l, l')   pre at(p, l)                     add at(p, l')       cost walking distance
+ *   harvest(p, r)    pre at(p, r)                     add carries(p, t)   cost 1
+ *   deposit(p, t)    pre carries(p, t), at(p, th)     add delivered(t)    cost 1
+ * For each state only the per-fact cost arrays are reset (at(p, l) starts at the distance from the peasant to l) and
+ * the h_add costs are computed with a generalized Dijkstra search over the facts: a fact is final when it leaves the
+ * queue, and an action is evaluated once, when its last precondition becomes final, instead of sweeping over every
+ * action until nothing changes. No graph objects are created during the search.
+ *
+ * Without deletes every load after the first would be free, so the relaxed cost of the first delivery of each type
+ * is combined with the loads that are still missing, each charged the round trip to the nearest resource that is not
+ * exhausted and spread over the peasants. Building b peasants costs b turns and 4 more gold loads but spreads the
+ * repeated trips over more peasants; the estimate is the best b, which is what makes the BuildPeasant scenarios work.
+ *
+ * The actions of the relaxed plan that can be applied in the state are its helpful actions (see getHelpfulActions).
+ * The estimate is not admissible.
+ */
+public class RelaxedPlanningHeuristic implements Heuristic {
+	/**
+	 * How the cost of the first deliveries is read from the relaxed planning graph.
+	 */
+	public enum Mode {
+		// sum of the costs of the goal facts
+		ADD,
+		// cost of the relaxed plan extracted from the best supporters
+		FF
+	}
+
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+	private static final int HARVEST_AMOUNT = 100;
+	private static final int PEASANT_GOLD = 400;
+	private static final int GOLD = 0;
+	private static final int WOOD = 1;
+
+	private final Mode mode;
+
+	private final int requiredGold;
+	private final int requiredWood;
+	private final boolean buildPeasants;
+
+	// locations: 0 is the townhall, 1 + i is resource i
+	private final int locationCount;
+	private final Position[] locations;
+	private final int[] locationType;
+	// walking distances between the locations and every map cell, same location indices
+	private final DistanceFields distances;
+	// walking distances between the locations, same location indices
+	private final DistanceTable pairs;
+	private final int slotCount;
+	private final int factCount;
+
+	// grounded actions, the preconditions are stored in CSR form in pre[preStart[a] .. preStart[a + 1])
+	private final StripsActionType[] actionType;
+	private final int[] actionSlot;
+	private final int[] actionLocation;
+	private final double[] actionCost;
+	private final int[] actionAdd;
+	private final int[] preStart;
+	private final int[] pre;
+	// actions that have a fact as precondition, in CSR form in trigger[triggerStart[f] .. triggerStart[f + 1])
+	private final int[] triggerStart;
+	private final int[] trigger;
+
+	// cost arrays and fact queue reused for every state evaluated by the same thread
+	private final ThreadLocal<Workspace> workspaces;
+
+	/**
+	 * Grounds the actions of a map.
+	 *
+	 * @param root The initial state of the search
+	 * @param mode How the cost of the first deliveries is computed
+	 */
+	public RelaxedPlanningHeuristic(GameState root, Mode mode) {
+		StaticWorld world = root.getWorld();
+		ResourceUnit[] resources = world.getResources();
+
+		this.mode = mode;
+		this.distances = world.getDistanceFields();
+		this.pairs = world.getDistanceTable();
+		this.requiredGold = world.getRequiredGold();
+		this.requiredWood = world.getRequiredWood();
+		this.buildPeasants = world.getBuildPeasants();
+
+		this.locationCount = resources.length + 1;
+		this.locations = new Position[locationCount];
+		this.locationType = new int[locationCount];
+		locations[0] = world.getTownhallPosition();
+		locationType[0] = -1;
+		for (ResourceUnit resource: resources) {
+			locations[resource.getIndex() + 1] = resource.getPosition();
+			locationType[resource.getIndex() + 1] = typeIndex(resource.getResourceType());
+		}
+
+		int peasantCount = StateCodec.peasantCount(root.getPackedPeasants());
+		this.slotCount = peasantCount + (buildPeasants ? Math.max(root.getCurrentFood(), 0) : 0);
+		this.factCount = slotCount * locationCount + slotCount * 2 + 2;
+
+		int moveCount = slotCount * locationCount * (locationCount - 1);
+		int actions = moveCount + slotCount * resources.length + slotCount * 2;
+		this.actionType = new StripsActionType[actions];
+		this.actionSlot = new int[actions];
+		this.actionLocation = new int[actions];
+		this.actionCost = new double[actions];
+		this.actionAdd = new int[actions];
+		this.preStart = new int[actions + 1];
+		this.pre = new int[moveCount + slotCount * resources.length + slotCount * 2 * 2];
+
+		int a = 0;
+		int p = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			// move(p, l, l')
+			for (int from = 0; from < locationCount; from++) {
+				for (int to = 0; to < locationCount; to++) {
+					if (from != to) {
+						preStart[a] = p;
+						pre[p++] = atFact(slot, from);
+						ground(a++, StripsActionType.MOVE, slot, to, Math.max(distances.distance(to, locations[from].x, locations[from].y), 1), atFact(slot, to));
+					}
+				}
+			}
+			// harvest(p, r)
+			for (int location = 1; location < locationCount; location++) {
+				preStart[a] = p;
+				pre[p++] = atFact(slot, location);
+				ground(a++, StripsActionType.HARVEST, slot, location, 1, carryFact(slot, locationType[location]));
+			}
+			// deposit(p, t)
+			for (int type = GOLD; type <= WOOD; type++) {
+				preStart[a] = p;
+				pre[p++] = carryFact(slot, type);
+				pre[p++] = atFact(slot, 0);
+				ground(a++, StripsActionType.DEPOSIT, slot, 0, 1, deliveredFact(type));
+			}
+		}
+		preStart[a] = p;
+
+		// inverts the preconditions so a fact that becomes final only visits the actions that need it
+		this.triggerStart = new int[factCount + 1];
+		this.trigger = new int[pre.length];
+		for (int i = 0; i < pre.length; i++) {
+			triggerStart[pre[i] + 1]++;
+		}
+		for (int fact = 0; fact < factCount; fact++) {
+			triggerStart[fact + 1] += triggerStart[fact];
+		}
+		int[] next = Arrays.copyOf(triggerStart, factCount);
+		for (int action = 0; action < actions; action++) {
+			for (int i = preStart[action]; i < preStart[action + 1]; i++) {
+				trigger[next[pre[i]]++] = action;
+			}
+		}
+
+		this.workspaces = new ThreadLocal<Workspace>() {
+			@Override
+			protected Workspace initialValue() {
+				return new Workspace(factCount, actionType.length);
+			}
+		};
+	}
+
+	@Override
+	public double estimate(GameState state) {
+		if (mode == Mode.ADD) {
+			return this.evaluate(state, null);
+		}
+
+		// the relaxed plan is extracted anyway, so the helpful actions are kept for the expansion of the state
+		List<HelpfulAction> helpful = new ArrayList<HelpfulAction>();
+		double estimate = this.evaluate(state, helpful);
+		state.setHelpfulActions(helpful);
+
+		return estimate;
+	}
+
+	@Override
+	public String getName() {
+		return (mode == Mode.ADD) ? "h_add" : "h_FF";
+	}
+
+	/**
+	 * Returns the actions of the relaxed plan of a state that can be applied in the state. A move is listed with the
+	 * location it walks to, a build is listed when building peasants gives the best estimate.
+	 *
+	 * The actions found when the estimate of the state was computed are reused, the relaxed plan is only evaluated
+	 * again when the state has none, e.g. because its estimate came from a cache.
+	 *
+	 * @param state The state to evaluate
+	 * @return helpful actions of the state
+	 */
+	public List<HelpfulAction> getHelpfulActions(GameState state) {
+		List<HelpfulAction> helpful = state.getHelpfulActions();
+		if (helpful == null) {
+			helpful = new ArrayList<HelpfulAction>();
+			this.evaluate(state, helpful);
+			state.setHelpfulActions(helpful);
+		}
+
+		return helpful;
+	}
+
+	/**
+	 * Checks if an action generated for a state matches one of its helpful actions.
+	 *
+	 * @param action The action that produced a child
+	 * @param helpful Helpful actions of the parent state
+	 * @return true if the action is helpful
+	 */
+	public boolean isHelpful(StripsAction action, List<HelpfulAction> helpful) {
+		for (HelpfulAction candidate: helpful) {
+			if (candidate.getActionType() == action.getActionType()) {
+				// a move is only helpful if it walks to the same location or to a resource of the same type
+				if (action.getActionType() != StripsActionType.MOVE || candidate.getTarget().equals(action.getTargetPos())) {
+					return true;
+				}
+				if (candidate.getResourceType() != null && candidate.getResourceType() == this.resourceTypeAt(action.getTargetPos())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Orders the children of a state so the children produced by helpful actions come first. The order within both
+	 * groups is kept.
+	 *
+	 * @param state The expanded state
+	 * @param children The children of the state
+	 * @return the children with the helpful ones first
+	 */
+	public List<GameState> prioritize(GameState state, List<GameState> children) {
+		List<HelpfulAction> helpful = this.getHelpfulActions(state);
+		List<GameState> ordered = new ArrayList<GameState>(children.size());
+		List<GameState> others = new ArrayList<GameState>();
+
+		for (GameState child: children) {
+			if (this.isHelpful(child.getAction(), helpful)) {
+				ordered.add(child);
+			}
+			else {
+				others.add(child);
+			}
+		}
+		ordered.addAll(others);
+
+		return ordered;
+	}
+
+	// helper method to compute the estimate and collect the helpful actions if a list is given
+	private double evaluate(GameState state, List<HelpfulAction> helpful) {
+		int[] peasants = state.getPackedPeasants();
+		int[] resourceAmounts = state.getResourceAmounts();
+		int peasantCount = StateCodec.peasantCount(peasants);
+
+		int[] deficit = { requiredGold - state.getCurrentGold(), requiredWood - state.getCurrentWood() };
+		if (deficit[GOLD] <= 0 && deficit[WOOD] <= 0) {
+			return 0.;
+		}
+
+		Workspace workspace = workspaces.get();
+		double[] cost = workspace.cost;
+		int[] supporter = workspace.supporter;
+		Arrays.fill(cost, INFINITY);
+		Arrays.fill(supporter, -1);
+
+		// initial facts: every peasant can walk straight to every location, carried cargo is available
+		int[] carried = new int[2];
+		for (int slot = 0; slot < Math.min(peasantCount, slotCount); slot++) {
+			int x = StateCodec.peasantX(peasants, slot);
+			int y = StateCodec.peasantY(peasants, slot);
+			for (int location = 0; location < locationCount; location++) {
+				cost[atFact(slot, location)] = distances.distance(location, x, y);
+			}
+
+			int cargoAmount = StateCodec.cargoAmount(peasants, slot);
+			if (cargoAmount > 0) {
+				int type = typeIndex(StateCodec.cargoType(peasants, slot));
+				cost[carryFact(slot, type)] = 0.;
+				carried[type] += cargoAmount;
+			}
+		}
+
+		this.relax(workspace, resourceAmounts);
+
+		// cost of the first delivery of each type that is still needed
+		double addCost = 0.;
+		double planCost = 0.;
+		boolean[] marked = (mode == Mode.FF || helpful != null) ? new boolean[actionType.length] : null;
+		for (int type = GOLD; type <= WOOD; type++) {
+			if (deficit[type] > 0) {
+				if (cost[deliveredFact(type)] == INFINITY) {
+					return INFINITY;
+				}
+				addCost += cost[deliveredFact(type)];
+				if (marked != null) {
+					planCost += this.extract(deliveredFact(type), cost, supporter, marked, helpful, peasants);
+				}
+			}
+		}
+		double firstDeliveries = (mode == Mode.ADD) ? addCost : planCost;
+
+		// round trip from the townhall to the nearest resource of each type that is not exhausted
+		double[] roundTrip = { INFINITY, INFINITY };
+		for (int location = 1; location < locationCount; location++) {
+			if (resourceAmounts[location - 1] > 0) {
+				int type = locationType[location];
+				roundTrip[type] = Math.min(roundTrip[type], 2. * pairs.distance(location, 0) + 2.);
+			}
+		}
+
+		// try every number of peasants that can still be built and keep the best estimate
+		int maxBuilds = (buildPeasants) ? Math.max(Math.min(state.getCurrentFood(), slotCount - peasantCount), 0) : 0;
+		double best = INFINITY;
+		int bestBuilds = 0;
+		for (int builds = 0; builds <= maxBuilds; builds++) {
+			double repeatedWork = 0.;
+			for (int type = GOLD; type <= WOOD; type++) {
+				int missing = deficit[type] + ((type == GOLD) ? builds * PEASANT_GOLD : 0);
+				int loads = trips(missing - carried[type]) - ((carried[type] > 0 || deficit[type] <= 0) ? 0 : 1);
+				if (loads > 0) {
+					repeatedWork += loads * roundTrip[type];
+				}
+			}
+
+			double estimate = builds + firstDeliveries + repeatedWork / (peasantCount + builds);
+			if (estimate < best) {
+				best = estimate;
+				bestBuilds = builds;
+			}
+		}
+
+		if (helpful != null && bestBuilds > 0) {
+			helpful.add(new HelpfulAction(StripsActionType.BUILD, -1, locations[0], null));
+		}
+
+		return best;
+	}
+
+	// helper method to compute the h_add costs from the initial fact costs, taking the facts in order of their cost
+	private void relax(Workspace workspace, int[] resourceAmounts) {
+		double[] cost = workspace.cost;
+		int[] supporter = workspace.supporter;
+		boolean[] settled = workspace.settled;
+		int[] waiting = workspace.waiting;
+		Arrays.fill(settled, false);
+		for (int a = 0; a < actionType.length; a++) {
+			waiting[a] = preStart[a + 1] - preStart[a];
+		}
+
+		workspace.clearQueue();
+		for (int fact = 0; fact < factCount; fact++) {
+			if (cost[fact] < INFINITY) {
+				workspace.push(fact, cost[fact]);
+			}
+		}
+
+		while (!workspace.isQueueEmpty()) {
+			// a fact can be queued again with a lower cost, the older entries come later and are skipped
+			int fact = workspace.pop();
+			if (settled[fact]) {
+				continue;
+			}
+			settled[fact] = true;
+
+			for (int i = triggerStart[fact]; i < triggerStart[fact + 1]; i++) {
+				int a = trigger[i];
+				if (--waiting[a] > 0) {
+					continue;
+				}
+				// exhausted resources cannot be harvested
+				if (actionType[a] == StripsActionType.HARVEST && resourceAmounts[actionLocation[a] - 1] <= 0) {
+					continue;
+				}
+
+				// every precondition is final, so the action is evaluated once
+				double value = actionCost[a];
+				for (int j = preStart[a]; j < preStart[a + 1]; j++) {
+					value += cost[pre[j]];
+				}
+
+				if (value < cost[actionAdd[a]]) {
+					cost[actionAdd[a]] = value;
+					supporter[actionAdd[a]] = a;
+					workspace.push(actionAdd[a], value);
+				}
+			}
+		}
+	}
+
+	// helper method to mark the relaxed plan of a fact, returns the cost of the actions that were newly marked
+	private double extract(int fact, double[] cost, int[] supporter, boolean[] marked, List<HelpfulAction> helpful, int[] peasants) {
+		int a = supporter[fact];
+
+		// an initial fact, a positive cost is the walk of a peasant from where it stands
+		if (a == -1) {
+			if (cost[fact] > 0. && fact < slotCount * locationCount) {
+				int slot = fact / locationCount;
+				int location = fact % locationCount;
+				if (helpful != null) {
+					helpful.add(new HelpfulAction(StripsActionType.MOVE, StateCodec.peasantID(peasants, slot), locations[location], typeOf(location)));
+				}
+				return cost[fact];
+			}
+			return 0.;
+		}
+
+		if (marked[a]) {
+			return 0.;
+		}
+		marked[a] = true;
+
+		double total = actionCost[a];
+		boolean applicable = true;
+		for (int i = preStart[a]; i < preStart[a + 1]; i++) {
+			applicable &= (cost[pre[i]] == 0.);
+			total += this.extract(pre[i], cost, supporter, marked, helpful, peasants);
+		}
+
+		if (helpful != null && applicable) {
+			helpful.add(new HelpfulAction(actionType[a], StateCodec.peasantID(peasants, actionSlot[a]), locations[actionLocation[a]], typeOf(actionLocation[a])));
+		}
+
+		return total;
+	}
+
+	// helper method to store a grounded action
+	private void ground(int a, StripsActionType type, int slot, int location, double cost, int add) {
+		actionType[a] = type;
+		actionSlot[a] = slot;
+		actionLocation[a] = location;
+		actionCost[a] = cost;
+		actionAdd[a] = add;
+	}
+
+	// get index of the fact at(p, l)
+	private int atFact(int slot, int location) {
+		return slot * locationCount + location;
+	}
+
+	// get index of the fact carries(p, t)
+	private int carryFact(int slot, int type) {
+		return slotCount * locationCount + slot * 2 + type;
+	}
+
+	// get index of the fact delivered(t)
+	private int deliveredFact(int type) {
+		return slotCount * locationCount + slotCount * 2 + type;
+	}
+
+	// helper method to get the resource type of a location, null for the townhall
+	private ResourceType typeOf(int location) {
+		if (location == 0) {
+			return null;
+		}
+		return (locationType[location] == GOLD) ? ResourceType.GOLD : ResourceType.WOOD;
+	}
+
+	// helper method to map a resource type to its index in the cost arrays
+	private static int typeIndex(ResourceType type) {
+		return (type == ResourceType.GOLD) ? GOLD : WOOD;
+	}
+
+	// helper method to get the number of loads needed for the missing amount
+	private static int trips(int missing) {
+		return (missing <= 0) ? 0 : (missing + HARVEST_AMOUNT - 1) / HARVEST_AMOUNT;
+	}
+
+	// helper method to get the resource type at a position, null if no resource is there
+	private ResourceType resourceTypeAt(Position position) {
+		for (int location = 1; location < locationCount; location++) {
+			if (locations[location].equals(position)) {
+				return typeOf(location);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Per-thread arrays of one evaluation: the fact costs and best supporters, the facts that are final, the number
+	 * of preconditions of every action that are not final yet and a binary min-heap of (cost, fact) entries. Every
+	 * fact is queued once at the start and at most once more per action, so the heap never grows.
+	 */
+	private static final class Workspace {
+		private final double[] cost;
+		private final int[] supporter;
+		private final boolean[] settled;
+		private final int[] waiting;
+
+		private final double[] queueCost;
+		private final int[] queueFact;
+		private int queueSize = 0;
+
+		// constructor for the arrays of a grounded map
+		private Workspace(int factCount, int actionCount) {
+			this.cost = new double[factCount];
+			this.supporter = new int[factCount];
+			this.settled = new boolean[factCount];
+			this.waiting = new int[actionCount];
+			this.queueCost = new double[factCount + actionCount];
+			this.queueFact = new int[factCount + actionCount];
+		}
+
+		// helper method to empty the queue
+		private void clearQueue() {
+			this.queueSize = 0;
+		}
+
+		// check if the queue is empty
+		private boolean isQueueEmpty() {
+			return this.queueSize == 0;
+		}
+
+		// helper method to queue a fact with its cost
+		private void push(int fact, double value) {
+			int index = queueSize++;
+			while (index > 0) {
+				int parent = (index - 1) >>> 1;
+				if (queueCost[parent] <= value) {
+					break;
+				}
+				queueCost[index] = queueCost[parent];
+				queueFact[index] = queueFact[parent];
+				index = parent;
+			}
+			queueCost[index] = value;
+			queueFact[index] = fact;
+		}
+
+		// helper method to remove the entry with the lowest cost and return its fact
+		private int pop() {
+			int fact = queueFact[0];
+			queueSize--;
+
+			double value = queueCost[queueSize];
+			int last = queueFact[queueSize];
+			int index = 0;
+			int half = queueSize >>> 1;
+			while (index < half) {
+				int child = 2 * index + 1;
+				if (child + 1 < queueSize && queueCost[child + 1] < queueCost[child]) {
+					child++;
+				}
+				if (value <= queueCost[child]) {
+					break;
+				}
+				queueCost[index] = queueCost[child];
+				queueFact[index] = queueFact[child];
+				index = child;
+			}
+			queueCost[index] = value;
+			queueFact[index] = last;
+
+			return fact;
+		}
+	}
+
+	/**
+	 * An action of the relaxed plan that can be applied in the evaluated state.
+	 */
+	public static class HelpfulAction {
+		private final StripsActionType actionType;
+		private final int peasantID;
+		private final Position target;
+		private final ResourceType resourceType;
+
+		// constructor for a helpful action
+		public HelpfulAction(StripsActionType actionType, int peasantID, Position target, ResourceType resourceType) {
+			this.actionType = actionType;
+			this.peasantID = peasantID;
+			this.target = target;
+			this.resourceType = resourceType;
+		}
+
+		// get type of the action
+		public StripsActionType getActionType() {
+			return this.actionType;
+		}
+
+		// get id of the acting peasant, -1 for a build
+		public int getPeasantID() {
+			return this.peasantID;
+		}
+
+		// get location the action is performed at or walks to
+		public Position getTarget() {
+			return this.target;
+		}
+
+		// get resource type of the target, null for the townhall
+		public ResourceType getResourceType() {
+			return this.resourceType;
+		}
+
+		public String toString() {
+			return actionType + ": Unit " + peasantID + " at " + target;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.cwru.sepia.environment.model.state.ResourceType;
+
+/**
+ * Spatial index for nearest resource queries. The map is cut into square buckets of BUCKET_SIZE x BUCKET_SIZE cells
+ * and every resource is put in the bucket of its cell, with one grid per ResourceType. A query looks at the buckets
+ * in rings of growing size around the bucket of the query cell and stops as soon as no bucket further out can hold a
+ * closer resource, so it only looks at the resources near the query instead of all of them.
+ *
+ * Resources never move, so the index is built once with the StaticWorld. What a resource holds changes from state to
+ * state, so every query gets the amounts of the state and skips the exhausted resources; a resource that is used up
+ * is thereby removed from the answers of that state and its children without changing the index.
+ *
+ * Distances are Chebyshev distances and ties go to the lower resource index, so the answers are the same as those of
+ * a scan over the resource list.
+ */
+public final class ResourceIndex {
+	public static final int BUCKET_SIZE = 4;
+
+	private static final int[] NONE = new int[0];
+	private static final ResourceType[] TYPES = ResourceType.values();
+
+	private final ResourceUnit[] resources;
+	private final int xBuckets;
+	private final int yBuckets;
+
+	// [resource type][bx * yBuckets + by] holds the indices of the resources in the bucket
+	private final int[][][] buckets;
+
+	/**
+	 * Puts the resources of a map in their buckets.
+	 *
+	 * @param xExtent X dimension size of the map
+	 * @param yExtent Y dimension size of the map
+	 * @param resources Resources of the map, indexed by ResourceUnit.getIndex()
+	 */
+	public ResourceIndex(int xExtent, int yExtent, ResourceUnit[] resources) {
+		this.resources = resources;
+		this.xBuckets = Math.max((xExtent + BUCKET_SIZE - 1) / BUCKET_SIZE, 1);
+		this.yBuckets = Math.max((yExtent + BUCKET_SIZE - 1) / BUCKET_SIZE, 1);
+
+		List<List<List<Integer>>> lists = new ArrayList<List<List<Integer>>>();
+		for (int type = 0; type < TYPES.length; type++) {
+			List<List<Integer>> grid = new ArrayList<List<Integer>>();
+			for (int bucket = 0; bucket < xBuckets * yBuckets; bucket++) {
+				grid.add(new ArrayList<Integer>());
+			}
+			lists.add(grid);
+		}
+		for (ResourceUnit resource: resources) {
+			Position position = resource.getPosition();
+			int bucket = this.bucketX(position.x) * yBuckets + this.bucketY(position.y);
+			lists.get(resource.getResourceType().ordinal()).get(bucket).add(resource.getIndex());
+		}
+
+		this.buckets = new int[TYPES.length][xBuckets * yBuckets][];
+		for (int type = 0; type < TYPES.length; type++) {
+			for (int bucket = 0; bucket < xBuckets * yBuckets; bucket++) {
+				List<Integer> list = lists.get(type).get(bucket);
+				int[] indices = new int[list.size()];
+				for (int i = 0; i < indices.length; i++) {
+					indices[i] = list.get(i);
+				}
+				buckets[type][bucket] = (indices.length == 0) ? NONE : indices;
+			}
+		}
+	}
+
+	/**
+	 * @param type Type of the resource
+	 * @param x X coordinate of the query
+	 * @param y Y coordinate of the query
+	 * @param amounts Amount left in each resource of the state
+	 * @return index of the nearest resource of the type that is not exhausted, -1 if there is none
+	 */
+	public int nearest(ResourceType type, int x, int y, int[] amounts) {
+		int[] nearest = this.nearest(type, x, y, 1, amounts);
+
+		return (nearest.length == 0) ? -1 : nearest[0];
+	}
+
+	/**
+	 * Finds the k nearest resources of a type that are not exhausted.
+	 *
+	 * @param type Type of the resource
+	 * @param x X coordinate of the query
+	 * @param y Y coordinate of the query
+	 * @param k Number of resources to find
+	 * @param amounts Amount left in each resource of the state
+	 * @return indices of up to k resources, nearest first
+	 */
+	public int[] nearest(ResourceType type, int x, int y, int k, int[] amounts) {
+		if (k <= 0) {
+			return NONE;
+		}
+
+		int[][] grid = buckets[type.ordinal()];
+		int[] found = new int[k];
+		int[] distances = new int[k];
+		int count = 0;
+
+		int bx = this.bucketX(x);
+		int by = this.bucketY(y);
+		// the rings only bound the distance of a query on the map
+		boolean onMap = (bx * BUCKET_SIZE <= x && x < (bx + 1) * BUCKET_SIZE && by * BUCKET_SIZE <= y && y < (by + 1) * BUCKET_SIZE);
+		int maxRing = Math.max(Math.max(bx, xBuckets - 1 - bx), Math.max(by, yBuckets - 1 - by));
+
+		for (int ring = 0; ring <= maxRing; ring++) {
+			// visit the buckets on the border of the ring
+			for (int rx = bx - ring; rx <= bx + ring; rx++) {
+				if (rx < 0 || rx >= xBuckets) {
+					continue;
+				}
+				boolean edge = (rx == bx - ring || rx == bx + ring);
+				for (int ry = by - ring; ry <= by + ring; ry += (edge || ring == 0) ? 1 : 2 * ring) {
+					if (ry < 0 || ry >= yBuckets) {
+						continue;
+					}
+
+					for (int index: grid[rx * yBuckets + ry]) {
+						if (amounts[index] <= 0) {
+							continue;
+						}
+						Position position = resources[index].getPosition();
+						int distance = Math.max(Math.abs(position.x - x), Math.abs(position.y - y));
+						count = insert(found, distances, count, index, distance);
+					}
+				}
+			}
+
+			// every bucket further out is more than ring * BUCKET_SIZE cells away
+			if (onMap && count == k && distances[k - 1] <= ring * BUCKET_SIZE) {
+				break;
+			}
+		}
+
+		return (count == k) ? found : Arrays.copyOf(found, count);
+	}
+
+	// helper method to insert a resource into the sorted list of the best ones, returns the new size of the list
+	private static int insert(int[] found, int[] distances, int count, int index, int distance) {
+		int k = found.length;
+		int position = count;
+
+		// ties go to the lower resource index
+		while (position > 0 && (distances[position - 1] > distance || (distances[position - 1] == distance && found[position - 1] > index))) {
+			position--;
+		}
+		if (position >= k) {
+			return count;
+		}
+
+		int last = Math.min(count, k - 1);
+		System.arraycopy(found, position, found, position + 1, last - position);
+		System.arraycopy(distances, position, distances, position + 1, last - position);
+		found[position] = index;
+		distances[position] = distance;
+
+		return Math.min(count + 1, k);
+	}
+
+	// helper method to get the bucket column of an x coordinate, positions off the map go to the border buckets
+	private int bucketX(int x) {
+		return Math.min(Math.max(x / BUCKET_SIZE, 0), xBuckets - 1);
+	}
+
+	// helper method to get the bucket row of a y coordinate, positions off the map go to the border buckets
+	private int bucketY(int y) {
+		return Math.min(Math.max(y / BUCKET_SIZE, 0), yBuckets - 1);
+	}
+}
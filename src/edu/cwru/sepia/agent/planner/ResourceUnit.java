@@ -8,6 +8,7 @@ import edu.cwru.sepia.util.Direction;
 
 public class ResourceUnit {
 		private int id;
+		private int index = -1;
 		private ResourceType resourceType;
 		private int amountRemaining;
 		private Position position;
@@ -25,11 +26,22 @@ public class ResourceUnit {
 			this.position = position;
 		}
 		
+		// constructor to create resource unit that remembers its index in the root resource list
+		public ResourceUnit(int id, int index, ResourceType resourceType, int amountRemaining, Position position) {
+			this(id, resourceType, amountRemaining, position);
+			this.index = index;
+		}
+		
 		// get id
 		public int getID() {
 			return this.id;
 		}
 		
+		// get index in the root resource list, it stays the same when exhausted resources are removed
+		public int getIndex() {
+			return this.index;
+		}
+		
 		// get resource type
 		public ResourceType getResourceType() {
 			return this.resourceType;
@@ -54,4 +66,21 @@ public class ResourceUnit {
 		public void setPosition(Position position) {
 			this.position = position;
 		}
+		
+		// two resource units are equal if they are the same resource with the same amount remaining
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof ResourceUnit)) return false;
+			
+			ResourceUnit unit = (ResourceUnit) o;
+			
+			return (this.id == unit.id) && (this.amountRemaining == unit.amountRemaining);
+		}
+		
+		// hash code consistent with equals
+		@Override
+		public int hashCode() {
+			return 31 * id + amountRemaining;
+		}
 }
@@ -0,0 +1,170 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Limits on the resources a search may use: the number of expansions, the heap in use and the wall clock time. A
+ * limit of 0 means no limit. The engine asks the budget before every expansion (SearchEngine.spend) and stops when
+ * the budget says so.
+ *
+ * While the search runs the budget remembers the expanded state that is closest to the goal, so a search that is cut
+ * off can still return a plan prefix that makes progress. States are ranked by the part of the required gold and
+ * wood they hold, then by the lower heuristic value, then by the lower path cost.
+ *
+ * A budget belongs to one search thread and is reset when a search starts.
+ */
+public class SearchBudget {
+	// heap use is only measured every this many expansions since it is slower to read than the clock
+	private static final int MEMORY_CHECK_INTERVAL = 256;
+
+	/**
+	 * Why a search stopped without a goal.
+	 */
+	public enum CutoffReason {
+		NONE, EXPANSIONS, MEMORY, TIME, CANCELLED, EXHAUSTED
+	}
+
+	private final long maxExpansions;
+	private final long maxHeapBytes;
+	private final long timeLimit;
+
+	private long startTime;
+	private long expansions;
+	private CutoffReason reason;
+	private GameState bestPartial;
+	private double bestProgress;
+
+	// constructor for a budget without limits
+	public SearchBudget() {
+		this(0L, 0L, 0L);
+	}
+
+	/**
+	 * @param maxExpansions Number of expansions, 0 for no limit
+	 * @param maxHeapBytes Heap in use in bytes, 0 for no limit
+	 * @param timeLimit Wall clock time in milliseconds, 0 for no limit
+	 */
+	public SearchBudget(long maxExpansions, long maxHeapBytes, long timeLimit) {
+		this.maxExpansions = maxExpansions;
+		this.maxHeapBytes = maxHeapBytes;
+		this.timeLimit = timeLimit;
+		this.start();
+	}
+
+	/**
+	 * Resets the counters and the best partial state and starts the clock.
+	 */
+	public void start() {
+		this.startTime = System.currentTimeMillis();
+		this.expansions = 0;
+		this.reason = CutoffReason.NONE;
+		this.bestPartial = null;
+		this.bestProgress = -1.;
+	}
+
+	/**
+	 * Records that a state is about to be expanded and checks the limits.
+	 *
+	 * @param state The state that would be expanded
+	 * @return true if the state may be expanded, false if a limit was reached
+	 */
+	public boolean spend(GameState state) {
+		if (reason != CutoffReason.NONE) {
+			return false;
+		}
+
+		this.offer(state);
+
+		if (maxExpansions > 0 && expansions >= maxExpansions) {
+			reason = CutoffReason.EXPANSIONS;
+		}
+		else if (timeLimit > 0 && this.getElapsed() >= timeLimit) {
+			reason = CutoffReason.TIME;
+		}
+		else if (maxHeapBytes > 0 && expansions % MEMORY_CHECK_INTERVAL == 0 && usedHeap() >= maxHeapBytes) {
+			reason = CutoffReason.MEMORY;
+		}
+		else {
+			expansions++;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Sets the reason when the search stopped for another reason than a limit, unless a limit was already reached.
+	 *
+	 * @param reason CANCELLED or EXHAUSTED
+	 */
+	public void stop(CutoffReason reason) {
+		if (this.reason == CutoffReason.NONE) {
+			this.reason = reason;
+		}
+	}
+
+	// helper method to keep the state if it is closer to the goal than the best partial state so far
+	private void offer(GameState state) {
+		double progress = goalProgress(state);
+
+		if (bestPartial == null || progress > bestProgress
+				|| (progress == bestProgress && state.getHeuristicValue() < bestPartial.getHeuristicValue())
+				|| (progress == bestProgress && state.getHeuristicValue() == bestPartial.getHeuristicValue() && state.getPathCost() < bestPartial.getPathCost())) {
+			bestPartial = state;
+			bestProgress = progress;
+		}
+	}
+
+	/**
+	 * @param state A state of the search
+	 * @return the part of the required gold and wood the state holds, between 0 and 1
+	 */
+	public static double goalProgress(GameState state) {
+		StaticWorld world = state.getWorld();
+		int required = world.getRequiredGold() + world.getRequiredWood();
+
+		if (required <= 0) {
+			return 1.;
+		}
+
+		int held = Math.min(state.getCurrentGold(), world.getRequiredGold()) + Math.min(state.getCurrentWood(), world.getRequiredWood());
+		return (double) held / required;
+	}
+
+	// helper method to get the heap in use
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// get why the search stopped, NONE if it is still running or found a goal
+	public CutoffReason getReason() {
+		return this.reason;
+	}
+
+	// get the expanded state closest to the goal, null if nothing was expanded
+	public GameState getBestPartial() {
+		return this.bestPartial;
+	}
+
+	// get number of expansions since the search started
+	public long getExpansions() {
+		return this.expansions;
+	}
+
+	// get milliseconds since the search started
+	public long getElapsed() {
+		return System.currentTimeMillis() - startTime;
+	}
+
+	/**
+	 * @return one line with the reason and the state of the budget, as key=value pairs for the logs
+	 */
+	@Override
+	public String toString() {
+		return "search cutoff: reason=" + reason
+				+ " expansions=" + expansions + "/" + maxExpansions
+				+ " elapsed_ms=" + this.getElapsed() + "/" + timeLimit
+				+ " heap_mb=" + (usedHeap() >> 20) + "/" + (maxHeapBytes >> 20)
+				+ " progress=" + ((bestPartial == null) ? 0. : bestProgress);
+	}
+}
@@ -0,0 +1,118 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Stack;
+
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+
+/**
+ * Base class of the search algorithms the PlannerAgent can plan with. An engine searches from the initial GameState
+ * to a goal state over GameState.generateChildren(); the plan is read back from the parent pointers of the goal.
+ *
+ * A search can be cancelled from another thread. The engine checks the flag between expansions and gives up as soon
+ * as it sees it. The engine also asks its SearchBudget before each expansion; when a limit is reached, plan() returns
+ * the plan to the expanded state closest to the goal instead of no plan.
+ */
+public abstract class SearchEngine {
+	private volatile boolean cancelled = false;
+	private SearchBudget budget = new SearchBudget();
+
+	/**
+	 * Searches for a goal state.
+	 *
+	 * @param startState The state which is being planned from
+	 * @return The goal state that was found or null if no plan was found
+	 */
+	public abstract GameState search(GameState startState);
+
+	/**
+	 * @return short name of the engine and its settings used in the logs
+	 */
+	public abstract String getName();
+
+	/**
+	 * Searches for a goal state and returns the plan that reaches it.
+	 *
+	 * @param startState The state which is being planned from
+	 * @return The plan or null if no plan is found
+	 */
+	public Stack<StripsAction> plan(GameState startState) {
+		budget.start();
+		GameState goal = this.search(startState);
+
+		if (goal != null) {
+			return extractPlan(goal);
+		}
+
+		budget.stop(this.isCancelled() ? SearchBudget.CutoffReason.CANCELLED : SearchBudget.CutoffReason.EXHAUSTED);
+		System.out.println(budget);
+
+		// a search that ran out of budget executes the best prefix it found, a search without a plan returns none
+		SearchBudget.CutoffReason reason = budget.getReason();
+		GameState partial = budget.getBestPartial();
+		if (partial != null && reason != SearchBudget.CutoffReason.EXHAUSTED && reason != SearchBudget.CutoffReason.CANCELLED) {
+			System.out.println("returning partial plan of " + partial.getPathCost() + " turns");
+			return extractPlan(partial);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Records that a state is about to be expanded and checks the budget and the cancel flag.
+	 *
+	 * @param state The state that would be expanded
+	 * @return true if the state may be expanded, false if the search must stop
+	 */
+	protected boolean spend(GameState state) {
+		return !this.isCancelled() && budget.spend(state);
+	}
+
+	// set the limits of the next search
+	public void setBudget(SearchBudget budget) {
+		this.budget = budget;
+	}
+
+	// get the limits of the search and the reason it stopped
+	public SearchBudget getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * Asks the search to stop. It is safe to call this from another thread.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	// check if the search was asked to stop
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	/**
+	 * Goes from a goal state back to the initial state and puts the actions on a stack, so the first action of the
+	 * plan is on top.
+	 *
+	 * @param goal The goal state that was found
+	 * @return The plan that reaches the goal state
+	 */
+	public static Stack<StripsAction> extractPlan(GameState goal) {
+		Stack<StripsAction> plan = new Stack<StripsAction>();
+
+		// Go to each node's parent and add it to the stack of moves
+		for (GameState current = goal; current.getParent() != null; current = current.getParent()) {
+			plan.push(current.getAction());
+		}
+
+		return plan;
+	}
+
+	// helper method to print the statistics of the heuristic cache if the search uses one
+	protected static void printCacheStatistics(GameState startState) {
+		Heuristic heuristic = startState.getEvaluator().getHeuristic();
+
+		if (heuristic instanceof CachedHeuristic) {
+			System.out.println(((CachedHeuristic) heuristic).getCache());
+		}
+	}
+}
@@ -146,4 +146,26 @@ public class SimulatedUnit {
 		public void setCargoType(ResourceType cargoType) {
 			this.cargoType = cargoType;
 		}
+		
+		// two simulated units are equal if they are the same unit at the same position carrying the same cargo
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof SimulatedUnit)) return false;
+			
+			SimulatedUnit unit = (SimulatedUnit) o;
+			
+			return (this.id == unit.id) && (this.cargoAmount == unit.cargoAmount) && (this.cargoType == unit.cargoType) && 
+					((this.position == null) ? unit.position == null : this.position.equals(unit.position));
+		}
+		
+		// hash code consistent with equals
+		@Override
+		public int hashCode() {
+			int result = id;
+			result = 31 * result + ((position == null) ? 0 : position.hashCode());
+			result = 31 * result + cargoAmount;
+			result = 31 * result + ((cargoType == null) ? 0 : cargoType.ordinal() + 1);
+			return result;
+		}
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.cwru.sepia.environment.model.state.ResourceType;
+
+/**
+ * Packs the parts of a GameState that change during the search into primitive arrays.
+ *
+ * Peasants are stored in an int[] with PEASANT_STRIDE ints per peasant:
+ *   [id, (x << 16) | y, (cargo type << 16) | cargo amount]
+ * where the cargo type is 0 for nothing, otherwise ResourceType.ordinal() + 1. A peasant with cargo amount 0 always has
+ * type 0, so an empty peasant does not remember what it carried last.
+ *
+ * Resources are stored in an int[] holding the amount left in each resource, indexed by ResourceUnit.getIndex().
+ * An exhausted resource has amount 0 and is left out of the decoded resource list. The id, type and position of a
+ * resource never change, so they are kept once per search in the ResourceUnit array of the initial state.
+ *
+ * The resource arrays are compared with Arrays.equals. Peasants that stand on the same position with the same cargo
+ * are interchangeable, so two peasant arrays are compared as multisets of (position, cargo) with samePeasants; the
+ * ids and the order of the peasants are kept for the actions of the plan but do not make states different.
+ */
+public final class StateCodec {
+	public static final int PEASANT_STRIDE = 3;
+
+	private static final int ID = 0;
+	private static final int POSITION = 1;
+	private static final int CARGO = 2;
+
+	private static final int LOW_MASK = 0xffff;
+
+	// value used for a peasant without a position
+	private static final int NO_POSITION = Integer.MIN_VALUE;
+
+	private static final ResourceType[] CARGO_TYPES = ResourceType.values();
+
+	// the codec only has static helpers
+	private StateCodec() {
+	}
+
+	/**
+	 * Packs a list of peasants.
+	 *
+	 * @param peasantList The peasants to pack
+	 * @return packed peasants
+	 */
+	public static int[] encodePeasants(List<SimulatedUnit> peasantList) {
+		int[] peasants = new int[peasantList.size() * PEASANT_STRIDE];
+
+		for (int i = 0; i < peasantList.size(); i++) {
+			SimulatedUnit peasant = peasantList.get(i);
+			peasants[i * PEASANT_STRIDE + ID] = peasant.getID();
+			peasants[i * PEASANT_STRIDE + POSITION] = encodePosition(peasant.getPosition());
+			peasants[i * PEASANT_STRIDE + CARGO] = encodeCargo(peasant.getCargoType(), peasant.getCargoAmount());
+		}
+
+		return peasants;
+	}
+
+	/**
+	 * Unpacks all peasants into SimulatedUnit objects.
+	 *
+	 * @param peasants Packed peasants
+	 * @return list of the unpacked peasants
+	 */
+	public static ArrayList<SimulatedUnit> decodePeasants(int[] peasants) {
+		ArrayList<SimulatedUnit> peasantList = new ArrayList<SimulatedUnit>(peasantCount(peasants));
+
+		for (int i = 0; i < peasantCount(peasants); i++) {
+			peasantList.add(new SimulatedUnit(peasantID(peasants, i), peasantPosition(peasants, i), cargoAmount(peasants, i), cargoType(peasants, i)));
+		}
+
+		return peasantList;
+	}
+
+	/**
+	 * Creates the amount array for the resources of the initial state.
+	 *
+	 * @param resources Resources of the initial state, indexed by ResourceUnit.getIndex()
+	 * @return amount left in each resource
+	 */
+	public static int[] encodeResources(ResourceUnit[] resources) {
+		int[] amounts = new int[resources.length];
+
+		for (ResourceUnit resource: resources) {
+			amounts[resource.getIndex()] = resource.getAmountRemaining();
+		}
+
+		return amounts;
+	}
+
+	/**
+	 * Unpacks the resources that are not exhausted into ResourceUnit objects.
+	 *
+	 * @param amounts Amount left in each resource
+	 * @param resources Resources of the initial state, used for the id, type and position
+	 * @return list of the resources that still hold something
+	 */
+	public static ArrayList<ResourceUnit> decodeResources(int[] amounts, ResourceUnit[] resources) {
+		ArrayList<ResourceUnit> resourceList = new ArrayList<ResourceUnit>();
+
+		for (int i = 0; i < amounts.length; i++) {
+			if (amounts[i] > 0) {
+				ResourceUnit resource = resources[i];
+				resourceList.add(new ResourceUnit(resource.getID(), i, resource.getResourceType(), amounts[i], resource.getPosition()));
+			}
+		}
+
+		return resourceList;
+	}
+
+	/**
+	 * Checks if two packed peasant arrays hold the same peasants, ignoring their ids and order.
+	 *
+	 * @param peasants Packed peasants of one state
+	 * @param others Packed peasants of the other state
+	 * @return true if every (position, cargo) pair appears equally often in both
+	 */
+	public static boolean samePeasants(int[] peasants, int[] others) {
+		if (peasants.length != others.length) {
+			return false;
+		}
+		// the same array, or the same peasants in the same order with the same ids
+		if (Arrays.equals(peasants, others)) {
+			return true;
+		}
+
+		long[] units = unitsWithoutIDs(peasants);
+		long[] otherUnits = unitsWithoutIDs(others);
+		Arrays.sort(units);
+		Arrays.sort(otherUnits);
+
+		return Arrays.equals(units, otherUnits);
+	}
+
+	// helper method to get the position and cargo of every peasant as one long
+	private static long[] unitsWithoutIDs(int[] peasants) {
+		long[] units = new long[peasantCount(peasants)];
+
+		for (int i = 0; i < units.length; i++) {
+			units[i] = ((long) peasants[i * PEASANT_STRIDE + POSITION] << 32) | (peasants[i * PEASANT_STRIDE + CARGO] & 0xffffffffL);
+		}
+
+		return units;
+	}
+
+	// get number of packed peasants
+	public static int peasantCount(int[] peasants) {
+		return peasants.length / PEASANT_STRIDE;
+	}
+
+	// get id of peasant i
+	public static int peasantID(int[] peasants, int i) {
+		return peasants[i * PEASANT_STRIDE + ID];
+	}
+
+	// get x coordinate of peasant i
+	public static int peasantX(int[] peasants, int i) {
+		return peasants[i * PEASANT_STRIDE + POSITION] >> 16;
+	}
+
+	// get y coordinate of peasant i
+	public static int peasantY(int[] peasants, int i) {
+		return (short) (peasants[i * PEASANT_STRIDE + POSITION] & LOW_MASK);
+	}
+
+	// get position of peasant i, this allocates a Position so prefer peasantX and peasantY in loops
+	public static Position peasantPosition(int[] peasants, int i) {
+		if (peasants[i * PEASANT_STRIDE + POSITION] == NO_POSITION) {
+			return null;
+		}
+
+		return new Position(peasantX(peasants, i), peasantY(peasants, i));
+	}
+
+	// get cargo type of peasant i, null if it carries nothing
+	public static ResourceType cargoType(int[] peasants, int i) {
+		int type = peasants[i * PEASANT_STRIDE + CARGO] >>> 16;
+
+		return (type == 0) ? null : CARGO_TYPES[type - 1];
+	}
+
+	// get cargo amount of peasant i
+	public static int cargoAmount(int[] peasants, int i) {
+		return peasants[i * PEASANT_STRIDE + CARGO] & LOW_MASK;
+	}
+
+	// check if peasant i stands on the given position
+	public static boolean isAt(int[] peasants, int i, Position position) {
+		return peasants[i * PEASANT_STRIDE + POSITION] == encodePosition(position);
+	}
+
+	// set position of peasant i
+	public static void setPosition(int[] peasants, int i, Position position) {
+		peasants[i * PEASANT_STRIDE + POSITION] = encodePosition(position);
+	}
+
+	// set cargo of peasant i
+	public static void setCargo(int[] peasants, int i, ResourceType cargoType, int cargoAmount) {
+		peasants[i * PEASANT_STRIDE + CARGO] = encodeCargo(cargoType, cargoAmount);
+	}
+
+	/**
+	 * Appends a peasant to the packed peasants.
+	 *
+	 * @param peasants Packed peasants
+	 * @param peasant The peasant to add
+	 * @return new array holding the old peasants and the added one
+	 */
+	public static int[] addPeasant(int[] peasants, SimulatedUnit peasant) {
+		int[] newPeasants = new int[peasants.length + PEASANT_STRIDE];
+		System.arraycopy(peasants, 0, newPeasants, 0, peasants.length);
+
+		int i = peasantCount(peasants);
+		newPeasants[i * PEASANT_STRIDE + ID] = peasant.getID();
+		setPosition(newPeasants, i, peasant.getPosition());
+		setCargo(newPeasants, i, peasant.getCargoType(), peasant.getCargoAmount());
+
+		return newPeasants;
+	}
+
+	// helper method to pack a position into one int
+	private static int encodePosition(Position position) {
+		if (position == null) {
+			return NO_POSITION;
+		}
+
+		return (position.x << 16) | (position.y & LOW_MASK);
+	}
+
+	// helper method to pack a cargo type and amount into one int, an empty peasant has no type whatever it carried last
+	private static int encodeCargo(ResourceType cargoType, int cargoAmount) {
+		int type = (cargoType == null || cargoAmount == 0) ? 0 : cargoType.ordinal() + 1;
+
+		return (type << 16) | (cargoAmount & LOW_MASK);
+	}
+}
@@ -0,0 +1,290 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.cwru.sepia.environment.model.state.ResourceNode;
+import edu.cwru.sepia.environment.model.state.ResourceType;
+import edu.cwru.sepia.environment.model.state.State;
+import edu.cwru.sepia.environment.model.state.Template.TemplateView;
+import edu.cwru.sepia.environment.model.state.Unit;
+
+/**
+ * The part of the planning problem that never changes during the search: the map size, the resources and the
+ * townhall, the goal amounts, the peasant template, the walking distances, the resource index and the Zobrist
+ * tables. The walking distances are read from the DistanceTable file of the map when the caller gives a directory
+ * and an earlier run saved one there.
+ *
+ * It is read from the StateView once when the initial GameState is created and then shared by reference by every
+ * state of the search, so a GameState only holds its dynamic fields. No reference to the StateView is kept, which
+ * means the search can run without a live SEPIA engine.
+ */
+public final class StaticWorld {
+	private final int playernum;
+	private final int requiredGold;
+	private final int requiredWood;
+	private final boolean buildPeasants;
+
+	private final int xExtent;
+	private final int yExtent;
+
+	private final List<Position> goldMineLocations;
+	private final List<Position> treeLocations;
+
+	// id, type, position and initial amount of every resource, indexed by ResourceUnit.getIndex()
+	private final ResourceUnit[] resources;
+
+	private final int townhallID;
+	private final Position townhallPosition;
+	private final int peasantTemplateID;
+
+	private final List<Position> occupiedPositionList;
+	private final List<Position> occupiedResourceList;
+
+	// peasants and food of the initial state
+	private final List<SimulatedUnit> initialPeasants;
+	private final int initialFood;
+
+	private final DistanceTable distanceTable;
+	private final DistanceFields distanceFields;
+	private final ResourceIndex resourceIndex;
+	private final ZobristKeys zobristKeys;
+
+	/**
+	 * Reads the static part of the problem from a stateview and computes the walking distances without a file.
+	 *
+	 * @param state The current stateview at the time the plan is being created
+	 * @param playernum The player number of agent that is planning
+	 * @param requiredGold The goal amount of gold
+	 * @param requiredWood The goal amount of wood
+	 * @param buildPeasants True if the BuildPeasant action should be considered
+	 */
+	public StaticWorld(State.StateView state, int playernum, int requiredGold, int requiredWood, boolean buildPeasants) {
+		this(state, playernum, requiredGold, requiredWood, buildPeasants, null);
+	}
+
+	/**
+	 * Reads the static part of the problem from a stateview.
+	 *
+	 * @param state The current stateview at the time the plan is being created
+	 * @param playernum The player number of agent that is planning
+	 * @param requiredGold The goal amount of gold
+	 * @param requiredWood The goal amount of wood
+	 * @param buildPeasants True if the BuildPeasant action should be considered
+	 * @param distanceDirectory Directory of the DistanceTable files, or null to compute the distances without a file
+	 */
+	public StaticWorld(State.StateView state, int playernum, int requiredGold, int requiredWood, boolean buildPeasants, File distanceDirectory) {
+		this.playernum = playernum;
+		this.requiredGold = requiredGold;
+		this.requiredWood = requiredWood;
+		this.buildPeasants = buildPeasants;
+
+		this.xExtent = state.getXExtent();
+		this.yExtent = state.getYExtent();
+
+		ArrayList<Position> goldMineLocations = new ArrayList<Position>();
+		ArrayList<Position> treeLocations = new ArrayList<Position>();
+		ArrayList<ResourceUnit> resourceList = new ArrayList<ResourceUnit>();
+		ArrayList<Position> occupiedPositionList = new ArrayList<Position>();
+		ArrayList<Position> occupiedResourceList = new ArrayList<Position>();
+
+		// confirms that there are resources in the map
+		if (state.getAllResourceIds().size() != 0) {
+			List<ResourceNode.ResourceView> goldMineNodes = state.getResourceNodes(ResourceNode.Type.GOLD_MINE);
+			List<ResourceNode.ResourceView> treeNodes = state.getResourceNodes(ResourceNode.Type.TREE);
+
+			// stores the location of gold mines if they are present on the map
+			if (goldMineNodes != null) {
+				for (ResourceNode.ResourceView goldMine: goldMineNodes) {
+					Position position = new Position(goldMine.getXPosition(), goldMine.getYPosition());
+					goldMineLocations.add(position);
+					occupiedPositionList.add(position);
+					occupiedResourceList.add(position);
+
+					resourceList.add(new ResourceUnit(goldMine.getID(), resourceList.size(), ResourceType.GOLD, goldMine.getAmountRemaining(), position));
+				}
+			}
+
+			// stores the location of trees if they are present on the map
+			if (treeNodes != null) {
+				for (ResourceNode.ResourceView tree: treeNodes) {
+					Position position = new Position(tree.getXPosition(), tree.getYPosition());
+					treeLocations.add(position);
+					occupiedPositionList.add(position);
+					occupiedResourceList.add(position);
+
+					resourceList.add(new ResourceUnit(tree.getID(), resourceList.size(), ResourceType.WOOD, tree.getAmountRemaining(), position));
+				}
+			}
+		}
+		// returns message when no resources are found on map
+		else {
+			System.out.println("No resources found on map");
+		}
+
+		ArrayList<SimulatedUnit> peasantList = new ArrayList<SimulatedUnit>();
+		int townhallID = -1;
+		Position townhallPosition = null;
+		int food = 0;
+
+		// stores the individual units of the player
+		for (Integer id: state.getUnitIds(playernum)) {
+			Unit.UnitView unit = state.getUnit(id);
+			String unitType = unit.getTemplateView().getName().toLowerCase();
+
+			if (unitType.equals("peasant")) {
+				peasantList.add(new SimulatedUnit(unit));
+				occupiedPositionList.add(new Position(unit.getXPosition(), unit.getYPosition()));
+
+				// each peasant uses 1 food
+				food -= 1;
+			}
+			else if (unitType.equals("townhall")) {
+				townhallID = id;
+				townhallPosition = new Position(unit.getXPosition(), unit.getYPosition());
+				occupiedPositionList.add(townhallPosition);
+
+				// townhall supplies 3 food
+				food += 3;
+			}
+			// returns error if unknown unit found
+			else {
+				System.err.println("Unknown unit type");
+			}
+		}
+
+		// checks if the peasants and the townhall are found
+		if (peasantList.size() == 0) {
+			System.err.println("No peasant found");
+		}
+		if (townhallID == -1) {
+			System.err.println("No townhall found");
+		}
+
+		// the template is looked up once so building a peasant does not need the stateview
+		TemplateView peasantTemplate = state.getTemplate(playernum, "Peasant");
+
+		this.goldMineLocations = Collections.unmodifiableList(goldMineLocations);
+		this.treeLocations = Collections.unmodifiableList(treeLocations);
+		this.resources = resourceList.toArray(new ResourceUnit[resourceList.size()]);
+		this.occupiedPositionList = Collections.unmodifiableList(occupiedPositionList);
+		this.occupiedResourceList = Collections.unmodifiableList(occupiedResourceList);
+		this.townhallID = townhallID;
+		this.townhallPosition = townhallPosition;
+		this.peasantTemplateID = (peasantTemplate == null) ? -1 : peasantTemplate.getID();
+		this.initialPeasants = Collections.unmodifiableList(peasantList);
+		this.initialFood = food;
+
+		// walks the map once from the townhall and every resource, or reads the walks of an earlier run on the map
+		this.distanceTable = DistanceTable.load(distanceDirectory, xExtent, yExtent, townhallPosition, resources);
+		this.distanceFields = distanceTable.getDistanceFields();
+
+		// buckets the resources for the nearest resource queries
+		this.resourceIndex = new ResourceIndex(xExtent, yExtent, resources);
+
+		// creates the Zobrist tables shared by every state of the search
+		this.zobristKeys = new ZobristKeys(xExtent, yExtent, StateCodec.encodeResources(resources));
+	}
+
+	// get player number of the planning agent
+	public int getPlayernum() {
+		return this.playernum;
+	}
+
+	// get goal amount of gold
+	public int getRequiredGold() {
+		return this.requiredGold;
+	}
+
+	// get goal amount of wood
+	public int getRequiredWood() {
+		return this.requiredWood;
+	}
+
+	// check if the BuildPeasant action should be considered
+	public boolean getBuildPeasants() {
+		return this.buildPeasants;
+	}
+
+	// get x dimension size of the map
+	public int getXExtent() {
+		return this.xExtent;
+	}
+
+	// get y dimension size of the map
+	public int getYExtent() {
+		return this.yExtent;
+	}
+
+	// get positions of all gold mines
+	public List<Position> getGoldMineLocations() {
+		return this.goldMineLocations;
+	}
+
+	// get positions of all trees
+	public List<Position> getTreeLocations() {
+		return this.treeLocations;
+	}
+
+	// get resources of the initial state, indexed by ResourceUnit.getIndex(), the array must not be modified
+	public ResourceUnit[] getResources() {
+		return this.resources;
+	}
+
+	// get id of the townhall
+	public int getTownhallID() {
+		return this.townhallID;
+	}
+
+	// get position of the townhall
+	public Position getTownhallPosition() {
+		return this.townhallPosition;
+	}
+
+	// get template id used to build peasants, -1 if the player has no peasant template
+	public int getPeasantTemplateID() {
+		return this.peasantTemplateID;
+	}
+
+	// get positions taken by resources, the townhall and the initial peasants
+	public List<Position> getOccupiedPositionList() {
+		return this.occupiedPositionList;
+	}
+
+	// get positions taken by resources
+	public List<Position> getOccupiedResourceList() {
+		return this.occupiedResourceList;
+	}
+
+	// get peasants of the initial state
+	public List<SimulatedUnit> getInitialPeasants() {
+		return this.initialPeasants;
+	}
+
+	// get food of the initial state
+	public int getInitialFood() {
+		return this.initialFood;
+	}
+
+	// get walking distances between every pair of key locations
+	public DistanceTable getDistanceTable() {
+		return this.distanceTable;
+	}
+
+	// get walking distances between the townhall, the resources and every map cell
+	public DistanceFields getDistanceFields() {
+		return this.distanceFields;
+	}
+
+	// get spatial index of the resources for nearest resource queries
+	public ResourceIndex getResourceIndex() {
+		return this.resourceIndex;
+	}
+
+	// get Zobrist tables shared by every state of the search
+	public ZobristKeys getZobristKeys() {
+		return this.zobristKeys;
+	}
+}
@@ -0,0 +1,107 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Fixed size transposition table for the linear-memory searches, keyed by the 64-bit fingerprint of a GameState.
+ *
+ * For every state it remembers the cheapest path cost at which the state was searched in the current iteration and a
+ * backed-up heuristic value: the smallest amount by which the subtree below the state overshot the bound of an
+ * earlier iteration. The table is direct mapped and a new state simply replaces the old one in its slot, so its memory
+ * never grows. Fingerprints are compared without GameState.equals, a 64-bit collision is accepted as a duplicate.
+ */
+public class TranspositionTable {
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+
+	private final long[] keys;
+	private final double[] pathCosts;
+	private final double[] heuristics;
+	// iteration in which the path cost was stored, 0 for an empty slot
+	private final int[] stamps;
+	private final int mask;
+
+	private long hits = 0;
+	private long stores = 0;
+	private long replacements = 0;
+
+	/**
+	 * @param capacity Number of slots, rounded up to a power of two
+	 */
+	public TranspositionTable(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+
+		this.keys = new long[size];
+		this.pathCosts = new double[size];
+		this.heuristics = new double[size];
+		this.stamps = new int[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Checks if a state was already searched in this iteration with a path that is not more expensive, otherwise the
+	 * state is recorded with its path cost.
+	 *
+	 * @param key Fingerprint of the state
+	 * @param pathCost Path cost of the state
+	 * @param iteration Number of the current iteration, starting at 1
+	 * @return true if the state can be skipped
+	 */
+	public boolean visit(long key, double pathCost, int iteration) {
+		int index = indexFor(key);
+
+		if (stamps[index] != 0 && keys[index] == key) {
+			if (stamps[index] == iteration && pathCosts[index] <= pathCost) {
+				hits++;
+				return true;
+			}
+		}
+		else {
+			if (stamps[index] != 0) {
+				replacements++;
+			}
+			keys[index] = key;
+			heuristics[index] = 0.;
+		}
+
+		pathCosts[index] = pathCost;
+		stamps[index] = iteration;
+		stores++;
+
+		return false;
+	}
+
+	/**
+	 * @param key Fingerprint of the state
+	 * @return The backed-up heuristic value of the state or 0 if none is stored
+	 */
+	public double getHeuristic(long key) {
+		int index = indexFor(key);
+
+		return (stamps[index] != 0 && keys[index] == key) ? heuristics[index] : 0.;
+	}
+
+	/**
+	 * Raises the backed-up heuristic value of a state that is stored in the table.
+	 *
+	 * @param key Fingerprint of the state
+	 * @param heuristic The new lower bound of the remaining cost
+	 */
+	public void raiseHeuristic(long key, double heuristic) {
+		int index = indexFor(key);
+
+		if (stamps[index] != 0 && keys[index] == key && heuristic > heuristics[index]) {
+			heuristics[index] = heuristic;
+		}
+	}
+
+	// helper method to map a fingerprint to its slot
+	private int indexFor(long key) {
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+
+	/**
+	 * @return human readable summary of the table statistics.
+	 */
+	@Override
+	public String toString() {
+		return "transposition table: " + keys.length + " slots, stores: " + stores + ", duplicate hits: " + hits + ", replacements: " + replacements;
+	}
+}
@@ -0,0 +1,164 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Arrays;
+
+import edu.cwru.sepia.environment.model.state.ResourceType;
+
+/**
+ * Admissible heuristic for the Midas domain measured in game turns.
+ *
+ * Every delivery of 100 gold or wood is a trip: walk to the resource, harvest, walk back and deposit. A trip that
+ * starts at the townhall takes at least 2 * d + 2 turns where d is the walking distance (DistanceTable) from the
+ * townhall to the nearest resource of that type. The deliveries that are still needed (ignoring the cargo that is
+ * already carried) are spread over the peasants, since a peasant can only work on one delivery at a time.
+ *
+ * The first trip of an empty peasant starts where the peasant stands instead of at the townhall, so its walk out is
+ * only as long as the walking distance from its cell to the nearest resource of that type. Each empty peasant, and
+ * each peasant that could still be built next to the townhall, can shorten one trip that way. The estimate takes off
+ * the largest of these savings, one per trip, so it stays a lower bound wherever the peasants stand.
+ *
+ * When peasants may be built the work is spread over the peasants that could still be built as well. The distances
+ * from every map cell to the nearest resource of each type are computed once for the map, so each state is
+ * evaluated with one pass over its packed peasants.
+ */
+public class TripCountHeuristic implements Heuristic {
+	private static final int HARVEST_AMOUNT = 100;
+
+	private final int requiredGold;
+	private final int requiredWood;
+	private final boolean buildPeasants;
+	private final int yExtent;
+
+	// walking distance from the townhall to the nearest resource of each type
+	private final int goldDistance;
+	private final int woodDistance;
+
+	// walking distance from every map cell to the nearest resource of each type, indexed by x * yExtent + y
+	private final short[] nearestGoldAt;
+	private final short[] nearestWoodAt;
+
+	// largest saving of the first trip of a peasant built next to the townhall, for each type
+	private final int goldSpawnSaving;
+	private final int woodSpawnSaving;
+
+	/**
+	 * Precomputes the round trips of the map.
+	 *
+	 * @param root The initial state of the search
+	 */
+	public TripCountHeuristic(GameState root) {
+		StaticWorld world = root.getWorld();
+
+		this.requiredGold = world.getRequiredGold();
+		this.requiredWood = world.getRequiredWood();
+		this.buildPeasants = world.getBuildPeasants();
+		this.yExtent = world.getYExtent();
+
+		this.goldDistance = nearestDistance(world, ResourceType.GOLD);
+		this.woodDistance = nearestDistance(world, ResourceType.WOOD);
+
+		this.nearestGoldAt = world.getDistanceFields().nearestField(world.getResources(), ResourceType.GOLD);
+		this.nearestWoodAt = world.getDistanceFields().nearestField(world.getResources(), ResourceType.WOOD);
+
+		// a built peasant appears on one of the cells around the townhall
+		int goldSaving = 0;
+		int woodSaving = 0;
+		Position townhallPosition = world.getTownhallPosition();
+		if (townhallPosition != null) {
+			for (Position adjacent: townhallPosition.getAdjacentPositions()) {
+				goldSaving = Math.max(goldSaving, this.saving(nearestGoldAt, goldDistance, adjacent.x, adjacent.y));
+				woodSaving = Math.max(woodSaving, this.saving(nearestWoodAt, woodDistance, adjacent.x, adjacent.y));
+			}
+		}
+		this.goldSpawnSaving = goldSaving;
+		this.woodSpawnSaving = woodSaving;
+	}
+
+	@Override
+	public double estimate(GameState state) {
+		int[] peasants = state.getPackedPeasants();
+		int peasantCount = StateCodec.peasantCount(peasants);
+
+		int missingGold = requiredGold - state.getCurrentGold();
+		int missingWood = requiredWood - state.getCurrentWood();
+
+		// cargo that is carried only needs to be deposited
+		for (int i = 0; i < peasantCount; i++) {
+			int cargoAmount = StateCodec.cargoAmount(peasants, i);
+			if (cargoAmount > 0) {
+				if (StateCodec.cargoType(peasants, i) == ResourceType.GOLD) {
+					missingGold -= cargoAmount;
+				}
+				else {
+					missingWood -= cargoAmount;
+				}
+			}
+		}
+
+		int goldTrips = trips(missingGold);
+		int woodTrips = trips(missingWood);
+		int builds = buildPeasants ? Math.max(state.getCurrentFood(), 0) : 0;
+
+		// an empty peasant can shorten the first trip of a type that is still needed, a peasant with cargo starts its
+		// next trip at the townhall
+		int[] savings = new int[peasantCount + builds];
+		for (int i = 0; i < peasantCount; i++) {
+			if (StateCodec.cargoAmount(peasants, i) == 0) {
+				int x = StateCodec.peasantX(peasants, i);
+				int y = StateCodec.peasantY(peasants, i);
+				savings[i] = Math.max((goldTrips > 0) ? this.saving(nearestGoldAt, goldDistance, x, y) : 0,
+						(woodTrips > 0) ? this.saving(nearestWoodAt, woodDistance, x, y) : 0);
+			}
+		}
+		for (int i = peasantCount; i < savings.length; i++) {
+			savings[i] = Math.max((goldTrips > 0) ? goldSpawnSaving : 0, (woodTrips > 0) ? woodSpawnSaving : 0);
+		}
+
+		// every trip is shortened at most once, so the largest savings are taken off
+		Arrays.sort(savings);
+		double work = goldTrips * (2. * goldDistance + 2.) + woodTrips * (2. * woodDistance + 2.);
+		for (int i = 0; i < Math.min(goldTrips + woodTrips, savings.length); i++) {
+			work -= savings[savings.length - 1 - i];
+		}
+
+		// peasants that may still be built can share the work as well
+		int workers = peasantCount + builds;
+
+		return Math.max(work, 0.) / Math.max(workers, 1);
+	}
+
+	@Override
+	public String getName() {
+		return "trip count";
+	}
+
+	// helper method to get the number of deliveries needed for the missing amount
+	private static int trips(int missing) {
+		return (missing <= 0) ? 0 : (missing + HARVEST_AMOUNT - 1) / HARVEST_AMOUNT;
+	}
+
+	// helper method to get the walking distance from the townhall to the nearest resource of a type, 0 when the map
+	// has no resource of that type
+	private static int nearestDistance(StaticWorld world, ResourceType type) {
+		int nearest = -1;
+
+		for (ResourceUnit resource: world.getResources()) {
+			if (resource.getResourceType() == type) {
+				int distance = world.getDistanceTable().distance(0, resource.getIndex() + 1);
+				nearest = (nearest == -1) ? distance : Math.min(nearest, distance);
+			}
+		}
+
+		return Math.max(nearest, 0);
+	}
+
+	// helper method to get how much shorter the walk to the nearest resource is from a cell than from the townhall
+	private int saving(short[] nearestAt, int townhallDistance, int x, int y) {
+		int index = x * yExtent + y;
+		if (x < 0 || y < 0 || y >= yExtent || index >= nearestAt.length) {
+			return 0;
+		}
+
+		return Math.max(townhallDistance - nearestAt[index], 0);
+	}
+}
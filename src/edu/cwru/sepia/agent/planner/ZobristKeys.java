@@ -0,0 +1,140 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Random;
+
+import edu.cwru.sepia.environment.model.state.ResourceType;
+
+/**
+ * Random words used to build the 64-bit Zobrist key of a GameState.
+ *
+ * The key of a state is the XOR of one word per state variable: the amount left in every resource and the current
+ * gold and wood totals. When an action changes a variable the key is updated by XORing out the old word and XORing in
+ * the new one, so every child gets its key from its parent in constant time without allocating anything. The gold
+ * and wood totals have no fixed upper bound, so their words come from a mixing function instead of a table.
+ *
+ * Peasants with the same position and cargo are interchangeable, so the peasants are hashed as a multiset: each
+ * peasant gets a word from its position and cargo only, not from its id or its place in the peasant list, and the
+ * words of all peasants are added up (XOR would cancel out two equal peasants). The sum is updated by subtracting the
+ * old word of a peasant and adding its new one.
+ *
+ * The tables are created once for the root state and shared by every state of the search.
+ */
+public class ZobristKeys {
+	private static final long SEED = 0x5e91a5eedL;
+	private static final int MAX_CARGO = 100;
+	private static final int HARVEST_AMOUNT = 100;
+
+	private static final long GOLD_SALT = 0x9e3779b97f4a7c15L;
+	private static final long WOOD_SALT = 0xc2b2ae3d27d4eb4fL;
+	private static final long OVERFLOW_SALT = 0x165667b19e3779f9L;
+
+	private final int xExtent;
+	private final int yExtent;
+
+	// [x * yExtent + y]
+	private final long[] positionWords;
+	// [cargo type][cargo amount]
+	private final long[][] cargoWords;
+	// [resource index][number of harvests taken], exhausted resources are removed and contribute no word
+	private final long[][] resourceWords;
+	private final int[] initialAmounts;
+
+	/**
+	 * Creates the random tables for a map.
+	 *
+	 * @param xExtent X dimension size of the map
+	 * @param yExtent Y dimension size of the map
+	 * @param initialAmounts Amount in each resource at the root state, indexed by ResourceUnit.getIndex()
+	 */
+	public ZobristKeys(int xExtent, int yExtent, int[] initialAmounts) {
+		this.xExtent = xExtent;
+		this.yExtent = yExtent;
+		this.initialAmounts = initialAmounts.clone();
+
+		Random random = new Random(SEED);
+
+		positionWords = new long[xExtent * yExtent];
+		fill(random, positionWords);
+		cargoWords = new long[3][MAX_CARGO + 1];
+		for (long[] words: cargoWords) {
+			fill(random, words);
+		}
+
+		resourceWords = new long[initialAmounts.length][];
+		for (int i = 0; i < initialAmounts.length; i++) {
+			resourceWords[i] = new long[Math.max(initialAmounts[i], 0) / HARVEST_AMOUNT + 1];
+			fill(random, resourceWords[i]);
+		}
+	}
+
+	/**
+	 * @param x X coordinate of the peasant
+	 * @param y Y coordinate of the peasant
+	 * @param cargoType Type of the carried resource, ignored when the amount is 0
+	 * @param cargoAmount Amount of the carried resource
+	 * @return word of a peasant with the given position and cargo, the peasant words of a state are added up
+	 */
+	public long peasantWord(int x, int y, ResourceType cargoType, int cargoAmount) {
+		return mix(this.positionWord(x, y) ^ Long.rotateLeft(this.cargoWord(cargoType, cargoAmount), 29));
+	}
+
+	// helper method to get the word of a position
+	private long positionWord(int x, int y) {
+		if (x >= 0 && y >= 0 && x < xExtent && y < yExtent) {
+			return positionWords[x * yExtent + y];
+		}
+
+		return mix(OVERFLOW_SALT ^ ((long) x << 24) ^ y);
+	}
+
+	// helper method to get the word of a cargo
+	private long cargoWord(ResourceType cargoType, int cargoAmount) {
+		int type = (cargoType == null || cargoAmount == 0) ? 0 : cargoType.ordinal() + 1;
+
+		if (type < 3 && cargoAmount >= 0 && cargoAmount <= MAX_CARGO) {
+			return cargoWords[type][cargoAmount];
+		}
+
+		return mix(OVERFLOW_SALT ^ ((long) type << 32) ^ cargoAmount);
+	}
+
+	/**
+	 * @param index Index of the resource (see ResourceUnit.getIndex())
+	 * @param amountRemaining Amount left in the resource
+	 * @return word for a resource holding the given amount
+	 */
+	public long resourceWord(int index, int amountRemaining) {
+		long[] words = resourceWords[index];
+
+		int taken = initialAmounts[index] - amountRemaining;
+		if (taken >= 0 && taken % HARVEST_AMOUNT == 0 && taken / HARVEST_AMOUNT < words.length) {
+			return words[taken / HARVEST_AMOUNT];
+		}
+
+		return mix(OVERFLOW_SALT ^ ((long) index << 32) ^ amountRemaining);
+	}
+
+	// get word for the current gold total
+	public long goldWord(int currentGold) {
+		return mix(GOLD_SALT ^ currentGold);
+	}
+
+	// get word for the current wood total
+	public long woodWord(int currentWood) {
+		return mix(WOOD_SALT ^ currentWood);
+	}
+
+	// helper method to fill a table with random words
+	private static void fill(Random random, long[] words) {
+		for (int i = 0; i < words.length; i++) {
+			words[i] = random.nextLong();
+		}
+	}
+
+	// helper method to turn any value into a random looking word (finalizer of the SplitMix64 generator)
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -18,7 +18,7 @@ public class Build_k implements StripsAction {
     private Integer targetID = null;
     private Position targetPos = null;
     private ArrayList<SimulatedUnit> peasantList;
-    private ArrayList<Position> occupiedPositionList;
+    private List<Position> occupiedPositionList;
     private ArrayList<ResourceUnit> resourceList;
 	
 	public Build_k(StripsActionType actionType) {
@@ -26,7 +26,7 @@ public class Build_k implements StripsAction {
 	}
 	
 	// constructor for BUILD
-	public Build_k(ArrayList<SimulatedUnit> peasantList, ArrayList<Position> occupiedPositionList, int townhallID, Position townhallPosition, int peasantTemplateID) {
+	public Build_k(ArrayList<SimulatedUnit> peasantList, List<Position> occupiedPositionList, int townhallID, Position townhallPosition, int peasantTemplateID) {
 		this.peasantList = peasantList;
 		this.occupiedPositionList = occupiedPositionList;
 		this.actorID = townhallID;
@@ -64,9 +64,20 @@ public class Build_k implements StripsAction {
 		GameState newState = new GameState(state, this);
 		
 		newState.buildPeasant();
+		
+		// the plan only needs the townhall and the template, so the parent's lists are released
+		this.releaseLists();
+		
 		return newState;
 	}
 
+	// helper method to release the working lists
+	private void releaseLists() {
+		this.peasantList = null;
+		this.occupiedPositionList = null;
+		this.resourceList = null;
+	}
+
 	@Override
     public StripsActionType getActionType() {
 		return actionType;
@@ -112,6 +123,12 @@ public class Build_k implements StripsAction {
 		this.targetPos = targetPos;
 	}
 
+	// the action is issued in a single turn
+	@Override
+	public int getDuration() {
+		return 1;
+	}
+
 	public String toString() {
 
 		return "BUILD: Townhall " + this.actorID;
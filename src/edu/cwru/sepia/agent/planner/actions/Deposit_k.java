@@ -76,9 +76,20 @@ public class Deposit_k implements StripsAction {
 			newState.depositCargo();
 		}
 		
+		// release the working lists so the plan step does not keep the parent's peasants alive
+		this.releaseLists();
+		
 		return newState;
 	}
 
+	// helper method to release the working lists
+	private void releaseLists() {
+		this.peasantList = null;
+		this.depositList = null;
+		this.occupiedPositionList = null;
+		this.resourceList = null;
+	}
+
 	@Override
     public StripsActionType getActionType() {
 		return actionType;
@@ -124,6 +135,12 @@ public class Deposit_k implements StripsAction {
 		this.targetPos = targetPos;
 	}
 
+	// the action is issued in a single turn
+	@Override
+	public int getDuration() {
+		return 1;
+	}
+
 	public String toString() {
 
 		return "DEPOSIT: Unit " + this.actorID + " into " + this.targetPos;
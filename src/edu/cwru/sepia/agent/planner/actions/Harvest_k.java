@@ -92,9 +92,20 @@ public class Harvest_k implements StripsAction {
 			newState.collectResource();
 		}
 		
+		// release the working lists so the plan step does not keep the parent's peasants and resources alive
+		this.releaseLists();
+		
 		return newState;
 	}
 
+	// helper method to release the working lists
+	private void releaseLists() {
+		this.peasantList = null;
+		this.harvestList = null;
+		this.occupiedPositionList = null;
+		this.resourceList = null;
+	}
+
 	@Override
     public StripsActionType getActionType() {
 		return actionType;
@@ -140,6 +151,12 @@ public class Harvest_k implements StripsAction {
 		this.targetPos = targetPos;
 	}
 
+	// the action is issued in a single turn
+	@Override
+	public int getDuration() {
+		return 1;
+	}
+
 	public String toString() {
 
 		return "HARVEST: Unit " + this.actorID + " at " + this.targetPos;
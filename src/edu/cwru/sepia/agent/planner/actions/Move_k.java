@@ -20,16 +20,16 @@ public class Move_k implements StripsAction {
     private Position targetPos = null;
     private ArrayList<SimulatedUnit> peasantList;
     private ArrayList<SimulatedUnit> moveList;
-    private ArrayList<Position> occupiedPositionList;
-    private ArrayList<ResourceUnit> resourceList;
+    private List<Position> occupiedPositionList;
     private ResourceType type;
+    private int duration = 0;
 	
 	public Move_k(StripsActionType actionType) {
 		this.actionType = actionType;
 	}
 	
 	// constructor for MOVE for Townhall
-	public Move_k(ArrayList<SimulatedUnit> peasantList, ArrayList<Position> occupiedPositionList, Position townhallPosition) {
+	public Move_k(ArrayList<SimulatedUnit> peasantList, List<Position> occupiedPositionList, Position townhallPosition) {
 		this.peasantList = peasantList;
 		this.occupiedPositionList = occupiedPositionList;
 		this.targetPos = townhallPosition;
@@ -37,10 +37,9 @@ public class Move_k implements StripsAction {
 	}
 	
 	// constructor for MOVE towards gold or wood
-	public Move_k(ArrayList<SimulatedUnit> peasantList, ArrayList<Position> occupiedPositionList, ArrayList<ResourceUnit> resourceList, ResourceType type) {
+	public Move_k(ArrayList<SimulatedUnit> peasantList, List<Position> occupiedPositionList, ResourceType type) {
 		this.peasantList = peasantList;
 		this.occupiedPositionList = occupiedPositionList;
-		this.resourceList = resourceList;
 		this.type = type;
 		this.actionType = StripsActionType.MOVE;
 	}
@@ -66,21 +65,29 @@ public class Move_k implements StripsAction {
 		// adds idle peasants to move towards gold
 		else if (type != null && type.equals(ResourceType.GOLD)) {
 			for (SimulatedUnit peasant: peasantList) {
-				this.targetID = peasant.getNearestResourceID(resourceList, peasant.getPosition(), ResourceType.GOLD);
-				this.targetPos = peasant.getNearestResourcePosition(resourceList, peasant.getPosition(), ResourceType.GOLD);
+				// the resource index of the world skips the resources this state has used up
+				int index = state.getNearestResourceIndex(peasant.getPosition(), ResourceType.GOLD);
+				ResourceUnit resource = (index == -1) ? null : state.getWorld().getResources()[index];
+				this.targetID = (resource == null) ? -1 : resource.getID();
+				this.targetPos = (resource == null) ? null : resource.getPosition();
 				
+				if (targetPos != null) {
 				// checks if peasant's current location and new location are both within map bound
 					if (peasant.getPosition().inBounds(state.getXExtent(), state.getYExtent()) && targetPos.inBounds(state.getXExtent(), state.getYExtent())) {
 						moveList.add(peasant);
 					}
 				}
+			}
 		}
 		
 		// adds idle peasants to move towards wood
 		else if (type != null && type.equals(ResourceType.WOOD)) {
 			for (SimulatedUnit peasant: peasantList) {
-				this.targetID = peasant.getNearestResourceID(resourceList, peasant.getPosition(), ResourceType.WOOD);
-				this.targetPos = peasant.getNearestResourcePosition(resourceList, peasant.getPosition(), ResourceType.WOOD);
+				// the resource index of the world skips the resources this state has used up
+				int index = state.getNearestResourceIndex(peasant.getPosition(), ResourceType.WOOD);
+				ResourceUnit resource = (index == -1) ? null : state.getWorld().getResources()[index];
+				this.targetID = (resource == null) ? -1 : resource.getID();
+				this.targetPos = (resource == null) ? null : resource.getPosition();
 				
 				if (targetPos != null) {
 				// checks if peasant's current location and new location are both within map bound
@@ -115,10 +122,24 @@ public class Move_k implements StripsAction {
 			this.actorPos = move.getPosition();
 			this.targetID = move.getID();
 			newState.movePeasant();
+			
+			// the peasants walk in parallel, so the move lasts as long as the longest walk around the obstacles
+			this.duration = Math.max(this.duration, state.getWorld().getDistanceFields().distance(move.getPosition(), targetPos));
 		}
+		
+		// the lists were only needed to pick the peasants to move, release them now that the move is applied
+		this.releaseLists();
+		
 		return newState;
 	}
 
+	// helper method to drop the references to the lists of the parent state
+	private void releaseLists() {
+		this.peasantList = null;
+		this.moveList = null;
+		this.occupiedPositionList = null;
+	}
+
 	@Override
     public StripsActionType getActionType() {
 		return actionType;
@@ -164,6 +185,12 @@ public class Move_k implements StripsAction {
 		this.targetPos = targetPos;
 	}
 
+	// get number of turns taken by the longest walk of the move, issuing the move takes at least one turn
+	@Override
+	public int getDuration() {
+		return Math.max(duration, 1);
+	}
+
 	public String toString() {
 
 		return "MOVE: Unit " + this.actorID + " to " + this.targetPos;
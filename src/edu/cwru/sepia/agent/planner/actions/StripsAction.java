@@ -47,6 +47,14 @@ public interface StripsAction {
 
     public StripsActionType getActionType();
 
+    /**
+     * Returns the number of game turns the action takes. The k peasants of a compound action act in parallel, so this
+     * is the duration of the slowest of them.
+     *
+     * @return duration of the action in turns
+     */
+    public int getDuration();
+
     public Integer getActorID();
 
     public void setActorID(Integer actorID);
@@ -0,0 +1,73 @@
+package edu.cwru.sepia.agent.planner;
+
+import edu.cwru.sepia.agent.planner.actions.StripsAction.StripsActionType;
+
+/**
+ * Checks that the deferred A* keeps the cheaper of two nodes of the same state even when the cheaper node has the
+ * higher priority, which happens because a deferred child inherits the estimate of its parent.
+ */
+public class DeferredAstarTest {
+	public static void main(String[] args) {
+		cheaperPathWithHigherPriorityReplacesQueuedNode();
+		deferredSearchFindsTheEagerPlanCost();
+		System.out.println("DeferredAstarTest: ok");
+	}
+
+	// root -> townhall is cheap but inherits the high estimate of the root, root -> mine -> townhall is expensive
+	// but inherits the estimate 0 of the mine state
+	private static void cheaperPathWithHigherPriorityReplacesQueuedNode() {
+		StaticWorld world = PlannerTests.world(200, 200, false);
+		final GameState root = new GameState(world);
+		root.setEvaluator(new Evaluator(1., 1., new Heuristic() {
+			@Override
+			public double estimate(GameState state) {
+				return (state.getParent() == null) ? 100. : 0.;
+			}
+
+			@Override
+			public String getName() {
+				return "root only";
+			}
+		}, true));
+
+		Position townhall = world.getTownhallPosition();
+		GameState cheap = PlannerTests.childOf(root, StripsActionType.MOVE, townhall);
+		GameState mine = null;
+		for (GameState child: root.generateChildren()) {
+			if (!townhall.equals(child.getAction().getTargetPos())) {
+				mine = child;
+			}
+		}
+		PlannerTests.check(mine != null, "the root has no move away from the townhall");
+		mine.evaluateDeferred();
+		GameState expensive = PlannerTests.childOf(mine, StripsActionType.MOVE, townhall);
+
+		PlannerTests.check(cheap.equals(expensive), "both paths should end in the same state");
+		PlannerTests.check(cheap.getPathCost() < expensive.getPathCost(), "the direct path should be cheaper");
+		PlannerTests.check(cheap.compareTo(expensive) > 0, "the cheaper node should have the higher inherited priority");
+
+		// add alone keeps the queued node, since it orders by priority
+		IndexedOpenList byPriority = new IndexedOpenList();
+		byPriority.add(expensive);
+		PlannerTests.check(!byPriority.add(cheap), "add should drop the node with the higher priority");
+
+		IndexedOpenList byPath = new IndexedOpenList();
+		byPath.add(expensive);
+		PlannerTests.check(byPath.addPath(cheap), "addPath should replace the more expensive node");
+		PlannerTests.check(byPath.size() == 1, "the state should be queued once");
+		PlannerTests.check(byPath.get(expensive) == cheap, "the queued node should be the cheaper one");
+		PlannerTests.check(!byPath.addPath(expensive), "addPath should drop the more expensive node");
+		PlannerTests.check(byPath.poll() == cheap, "the cheaper node should come out of the open list");
+	}
+
+	// the deferred search must stay optimal with the admissible trip count
+	private static void deferredSearchFindsTheEagerPlanCost() {
+		StaticWorld world = PlannerTests.world(200, 200, false);
+
+		GameState eager = new AstarEngine(false).search(new GameState(world));
+		GameState deferred = new AstarEngine(true).search(new GameState(world));
+
+		PlannerTests.check(eager != null && deferred != null, "both searches should find a plan");
+		PlannerTests.check(eager.getPathCost() == deferred.getPathCost(), "deferred plan cost " + deferred.getPathCost() + " should be " + eager.getPathCost());
+	}
+}
@@ -0,0 +1,65 @@
+package edu.cwru.sepia.agent.planner;
+
+import edu.cwru.sepia.agent.planner.actions.Deposit_k;
+import edu.cwru.sepia.agent.planner.actions.Harvest_k;
+import edu.cwru.sepia.agent.planner.actions.Move_k;
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+import edu.cwru.sepia.environment.model.state.ResourceType;
+
+/**
+ * Checks that an empty peasant does not remember what it carried last: delivering gold and then wood reaches the
+ * same state as delivering wood and then gold, with the same fingerprint and the same exact heuristic cache key.
+ */
+public class EmptyCargoTest {
+	public static void main(String[] args) {
+		StaticWorld world = PlannerTests.world(200, 200, false);
+		GameState root = new GameState(world);
+
+		GameState goldFirst = deliver(deliver(root, ResourceType.GOLD), ResourceType.WOOD);
+		GameState woodFirst = deliver(deliver(root, ResourceType.WOOD), ResourceType.GOLD);
+
+		PlannerTests.check(goldFirst.getCurrentGold() == 100 && goldFirst.getCurrentWood() == 100, "gold first should deliver one load of each");
+		PlannerTests.check(woodFirst.getCurrentGold() == 100 && woodFirst.getCurrentWood() == 100, "wood first should deliver one load of each");
+		PlannerTests.check(goldFirst.getFingerprint() == woodFirst.getFingerprint(), "the fingerprints should not depend on the last cargo type");
+		PlannerTests.check(goldFirst.equals(woodFirst), "the states should be equal");
+		PlannerTests.check(goldFirst.hashCode() == woodFirst.hashCode(), "the hash codes should be equal");
+
+		HeuristicCache exact = new HeuristicCache(world, true);
+		PlannerTests.check(exact.keyOf(goldFirst).equals(exact.keyOf(woodFirst)), "the exact cache keys should be equal");
+
+		// the initial peasant never carried anything and is empty as well
+		GameState walkedBack = walk(walk(root, ResourceType.GOLD), null);
+		GameState deposited = deliver(root, ResourceType.GOLD);
+		PlannerTests.check(StateCodec.cargoType(walkedBack.getPackedPeasants(), 0) == null, "a peasant that never carried should have no cargo type");
+		PlannerTests.check(StateCodec.cargoType(deposited.getPackedPeasants(), 0) == null, "an empty peasant should have no cargo type");
+
+		System.out.println("EmptyCargoTest: ok");
+	}
+
+	// helper method to walk to the nearest resource of a type, harvest there and deposit at the townhall
+	private static GameState deliver(GameState state, ResourceType type) {
+		StaticWorld world = state.getWorld();
+		GameState atResource = walk(state, type);
+		GameState harvested = apply(new Harvest_k(atResource.getPeasantList(), atResource.getResourceList()), atResource);
+		GameState atTownhall = walk(harvested, null);
+
+		return apply(new Deposit_k(atTownhall.getPeasantList(), world.getTownhallID(), world.getTownhallPosition()), atTownhall);
+	}
+
+	// helper method to walk to the nearest resource of a type, or to the townhall if type is null
+	private static GameState walk(GameState state, ResourceType type) {
+		StaticWorld world = state.getWorld();
+		if (type == null) {
+			return apply(new Move_k(state.getPeasantList(), world.getOccupiedPositionList(), world.getTownhallPosition()), state);
+		}
+
+		return apply(new Move_k(state.getPeasantList(), world.getOccupiedPositionList(), type), state);
+	}
+
+	// helper method to apply an action whose preconditions must hold
+	private static GameState apply(StripsAction action, GameState state) {
+		PlannerTests.check(action.preconditionsMet(state), action.getActionType() + " should be applicable");
+
+		return action.apply(state);
+	}
+}
@@ -0,0 +1,41 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Checks that HDA* reports no plan instead of hanging when the heuristic throws in one of its workers.
+ */
+public class ParallelAstarFailureTest {
+	public static void main(String[] args) throws InterruptedException {
+		GameState root = new GameState(PlannerTests.world(200, 200, false));
+		final Heuristic tripCount = root.getEvaluator().getHeuristic();
+		root.setEvaluator(new Evaluator(new Heuristic() {
+			@Override
+			public double estimate(GameState state) {
+				if (state.getCurrentGold() > 0) {
+					throw new IllegalStateException("broken heuristic");
+				}
+				return tripCount.estimate(state);
+			}
+
+			@Override
+			public String getName() {
+				return "fails after the first deposit";
+			}
+		}));
+
+		final ParallelAstarSearch engine = new ParallelAstarSearch(4);
+		final GameState start = root;
+		final GameState[] result = { start };
+		Thread search = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				result[0] = engine.search(start);
+			}
+		});
+		search.start();
+		search.join(10000L);
+
+		PlannerTests.check(!search.isAlive(), "the search should end when a worker fails");
+		PlannerTests.check(result[0] == null, "a failed search should report no plan");
+		System.out.println("ParallelAstarFailureTest: ok");
+	}
+}
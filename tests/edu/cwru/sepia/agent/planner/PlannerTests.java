@@ -0,0 +1,65 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.io.File;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+import edu.cwru.sepia.agent.planner.actions.StripsAction.StripsActionType;
+import edu.cwru.sepia.environment.model.persistence.generated.XmlState;
+import edu.cwru.sepia.environment.model.state.State;
+import edu.cwru.sepia.environment.model.state.XmlStateCreator;
+
+/**
+ * Helpers of the planner tests. There is no test framework on the class path, so every test is a class with a main
+ * method that throws an AssertionError when a check fails. The tests are run from the repository root with the
+ * sources and Sepia.jar on the class path, e.g.
+ *
+ *   javac -cp sepia/lib/Sepia.jar -d out $(find src tests -name '*.java')
+ *   java -cp out:sepia/lib/Sepia.jar edu.cwru.sepia.agent.planner.DeferredAstarTest
+ */
+final class PlannerTests {
+	// map of the midas scenarios, the planner is player 0
+	static final String MAP = "sepia/data/rc_3m5t.xml";
+	static final int PLAYERNUM = 0;
+
+	private PlannerTests() {
+	}
+
+	/**
+	 * Loads a map and reads the static part of a problem on it. The distances are computed without a file.
+	 *
+	 * @param requiredGold The goal amount of gold
+	 * @param requiredWood The goal amount of wood
+	 * @param buildPeasants True if the BuildPeasant action should be considered
+	 * @return the static part of the problem
+	 */
+	static StaticWorld world(int requiredGold, int requiredWood, boolean buildPeasants) {
+		try {
+			XmlState xmlState = (XmlState) JAXBContext.newInstance(XmlState.class).createUnmarshaller().unmarshal(new File(MAP));
+			State state = new XmlStateCreator(xmlState).createState();
+			return new StaticWorld(state.getView(PLAYERNUM), PLAYERNUM, requiredGold, requiredWood, buildPeasants);
+		} catch (JAXBException e) {
+			throw new IllegalStateException("Cannot load " + MAP, e);
+		}
+	}
+
+	// helper method to fail a test with a message
+	static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	// helper method to find the child of a state that an action of a type produced, any target if target is null
+	static GameState childOf(GameState state, StripsActionType actionType, Position target) {
+		for (GameState child: state.generateChildren()) {
+			StripsAction action = child.getAction();
+			if (action.getActionType() == actionType && (target == null || target.equals(action.getTargetPos()))) {
+				return child;
+			}
+		}
+		throw new AssertionError("no " + actionType + " child to " + target);
+	}
+}